@@ -4,10 +4,12 @@ import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.EnableAspectJAutoProxy;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 @EnableAspectJAutoProxy(exposeProxy = true)//暴露代理对象
 @EnableTransactionManagement//开启事务注解功能
+@EnableScheduling//开启定时任务
 @MapperScan("com.jgdp.mapper")
 @SpringBootApplication
 public class HmDianPingApplication {
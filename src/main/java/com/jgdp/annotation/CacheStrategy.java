@@ -0,0 +1,17 @@
+package com.jgdp.annotation;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 缓存策略，对应CacheHandleUtils中的查询方法
+ */
+public enum CacheStrategy {
+    //缓存空值防穿透
+    PASS_THROUGH,
+    //互斥锁防击穿
+    MUTEX,
+    //逻辑过期防击穿
+    LOGICAL_EXPIRE,
+    //互斥锁 + 过期后的宽限期，重建期间返回旧数据
+    SWR
+}
@@ -0,0 +1,58 @@
+package com.jgdp.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 声明式缓存，标注在service方法上，由CacheAspect按指定的策略通过CacheHandleUtils查询缓存
+ * 策略和过期时间可以在配置文件 jgdp.cache.methods.{name} 中覆盖，不需要修改代码
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Cached {
+
+    /**
+     * 缓存名称，用于在配置文件中覆盖策略和过期时间
+     */
+    String name();
+
+    /**
+     * key前缀，例如 cache:shop:
+     */
+    String keyPrefix();
+
+    /**
+     * id的SpEL表达式（例如 #shopId），为空时使用第一个参数
+     */
+    String key() default "";
+
+    /**
+     * 缓存策略
+     */
+    CacheStrategy strategy() default CacheStrategy.MUTEX;
+
+    /**
+     * 过期时间
+     */
+    long ttl();
+
+    /**
+     * 过期时间单位
+     */
+    TimeUnit timeUnit() default TimeUnit.MINUTES;
+
+    /**
+     * SWR策略过期后继续返回旧数据的宽限期（秒）
+     */
+    long grace() default 300;
+
+    /**
+     * 方法返回List时的元素类型（缓存中按数组保存）
+     */
+    Class<?> elementType() default Object.class;
+}
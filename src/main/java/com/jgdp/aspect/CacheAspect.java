@@ -0,0 +1,130 @@
+package com.jgdp.aspect;
+
+import com.jgdp.annotation.CacheStrategy;
+import com.jgdp.annotation.Cached;
+import com.jgdp.config.CacheProperties;
+import com.jgdp.utils.CacheHandleUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 声明式缓存切面，拦截@Cached标注的方法：
+ * 计算缓存id，按策略调用CacheHandleUtils，未命中时执行原方法作为查询数据库的逻辑
+ */
+@Slf4j
+@Aspect
+@Component
+public class CacheAspect {
+
+    @Autowired
+    private CacheHandleUtils cacheHandleUtils;
+    @Autowired
+    private CacheProperties cacheProperties;
+    private final ExpressionParser parser = new SpelExpressionParser();
+    private final ParameterNameDiscoverer nameDiscoverer = new DefaultParameterNameDiscoverer();
+    //解析过的id表达式
+    private final Map<String, Expression> expressions = new ConcurrentHashMap<>();
+
+    @Around("@annotation(cached)")
+    public Object around(ProceedingJoinPoint joinPoint, Cached cached) throws Throwable {
+        //1.读取配置文件中的覆盖项，关闭的直接执行原方法
+        CacheProperties.MethodSpec spec = cacheProperties.getMethods().get(cached.name());
+        if (spec != null && !spec.isEnabled()) {
+            return joinPoint.proceed();
+        }
+        CacheStrategy strategy = spec != null && spec.getStrategy() != null ? spec.getStrategy() : cached.strategy();
+        TimeUnit timeUnit = cached.timeUnit();
+        long ttl = cached.ttl();
+        if (spec != null && spec.getTtl() != null) {
+            ttl = timeUnit.convert(spec.getTtl());
+            //配置的过期时间不能用注解的单位精确表示时（例如注解单位为分钟、配置为30s）改用秒，避免被截断
+            if (!Duration.of(ttl, timeUnit.toChronoUnit()).equals(spec.getTtl())) {
+                timeUnit = TimeUnit.SECONDS;
+                ttl = spec.getTtl().getSeconds();
+            }
+            if (ttl <= 0) {
+                throw new IllegalStateException("缓存" + cached.name() + "的过期时间必须至少为1秒");
+            }
+        }
+
+        //2.计算缓存id和缓存的类型（List按数组保存，解码时才能拿到元素类型）
+        MethodSignature signature = (MethodSignature) joinPoint.getSignature();
+        Object id = resolveId(joinPoint, signature.getMethod(), cached);
+        boolean isList = List.class.isAssignableFrom(signature.getReturnType());
+        Class<?> type = isList ? arrayType(cached.elementType()) : signature.getReturnType();
+        Function<Object, Object> dbFallback = ignored -> toCached(proceed(joinPoint), isList, cached);
+
+        //3.按策略查询
+        String keyPrefix = cached.keyPrefix();
+        Object r = switch (strategy) {
+            case PASS_THROUGH -> cacheHandleUtils.queryWithPassThrough(
+                    keyPrefix, id, cast(type), dbFallback, ttl, timeUnit);
+            case LOGICAL_EXPIRE -> cacheHandleUtils.queryWithLogicalExpire(
+                    keyPrefix, id, cast(type), dbFallback, ttl, timeUnit);
+            case SWR -> cacheHandleUtils.queryWithMutex(
+                    keyPrefix, id, cast(type), dbFallback, ttl, timeUnit, Duration.ofSeconds(cached.grace()));
+            case MUTEX -> cacheHandleUtils.queryWithMutex(
+                    keyPrefix, id, cast(type), dbFallback, ttl, timeUnit);
+        };
+        return isList && r != null ? new ArrayList<>(Arrays.asList((Object[]) r)) : r;
+    }
+
+    private Object resolveId(ProceedingJoinPoint joinPoint, Method method, Cached cached) {
+        Object[] args = joinPoint.getArgs();
+        if (cached.key().isEmpty()) {
+            return args[0];
+        }
+        Expression expression = expressions.computeIfAbsent(cached.key(), parser::parseExpression);
+        return expression.getValue(new MethodBasedEvaluationContext(null, method, args, nameDiscoverer));
+    }
+
+    private static Object toCached(Object result, boolean isList, Cached cached) {
+        if (!isList || result == null) {
+            return result;
+        }
+        return ((List<?>) result).toArray((Object[]) Array.newInstance(cached.elementType(), 0));
+    }
+
+    private static Object proceed(ProceedingJoinPoint joinPoint) {
+        try {
+            return joinPoint.proceed();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Class<?> arrayType(Class<?> elementType) {
+        return Array.newInstance(elementType, 0).getClass();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Class<Object> cast(Class<?> type) {
+        return (Class<Object>) type;
+    }
+}
@@ -0,0 +1,37 @@
+package com.jgdp.config;
+
+import com.jgdp.service.IShopService;
+import com.jgdp.utils.BloomFilterRegistry;
+import com.jgdp.utils.RedisConstants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 项目启动时从数据库构建布隆过滤器
+ */
+@Slf4j
+@Component
+public class BloomFilterInitializer implements ApplicationRunner {
+
+    //每批查询的id数量
+    private static final int SCAN_BATCH_SIZE = 1000;
+
+    @Autowired
+    private BloomFilterRegistry bloomFilterRegistry;
+    @Autowired
+    private IShopService shopService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (bloomFilterRegistry.isEnabled(RedisConstants.CACHE_SHOP_KEY)) {
+            log.info("开始构建店铺布隆过滤器...");
+            bloomFilterRegistry.<Long>rebuild(RedisConstants.CACHE_SHOP_KEY,
+                    consumer -> shopService.scanIds(SCAN_BATCH_SIZE, consumer));
+        }
+    }
+}
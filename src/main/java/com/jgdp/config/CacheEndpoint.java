@@ -0,0 +1,32 @@
+package com.jgdp.config;
+
+import com.jgdp.utils.CacheMetrics;
+import jakarta.annotation.Resource;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 缓存指标的actuator端点：/actuator/cache
+ */
+@Component
+@Endpoint(id = "cache")
+public class CacheEndpoint {
+
+    @Resource
+    private CacheMetrics cacheMetrics;
+
+    /**
+     * 按key前缀和缓存策略汇总的命中率、重建耗时、锁竞争次数等
+     *
+     * @return
+     */
+    @ReadOperation
+    public Map<String, Map<String, Object>> cache() {
+        return cacheMetrics.snapshot();
+    }
+}
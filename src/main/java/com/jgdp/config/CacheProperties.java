@@ -0,0 +1,240 @@
+package com.jgdp.config;
+
+import com.jgdp.annotation.CacheStrategy;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 缓存相关配置（对应配置文件中的 jgdp.cache）
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "jgdp.cache")
+public class CacheProperties {
+
+    //缓存值的编解码方式：binary（默认）或者json
+    private String codec = "binary";
+    //大对象压缩配置
+    private Compression compression = new Compression();
+
+    //本地缓存（L1）配置
+    private Near near = new Near();
+    //布隆过滤器配置
+    private Bloom bloom = new Bloom();
+    //逻辑过期缓存的异步刷新配置
+    private Refresh refresh = new Refresh();
+    //过期时间策略配置
+    private Ttl ttl = new Ttl();
+    //缓存预热配置
+    private WarmUp warmUp = new WarmUp();
+    //热点key探测配置
+    private HotKey hotKey = new HotKey();
+    //互斥锁策略的过期后宽限期配置（stale-while-revalidate）
+    private Swr swr = new Swr();
+    //缓存失效（删除）配置
+    private Invalidation invalidation = new Invalidation();
+    //redis服务端辅助的客户端缓存配置
+    private ClientSide clientSide = new ClientSide();
+    //店铺分类本地快照配置
+    private ShopType shopType = new ShopType();
+    //响应级缓存配置
+    private Response response = new Response();
+    //@Cached方法的配置覆盖：缓存名称 -> 策略、过期时间
+    private Map<String, MethodSpec> methods = new HashMap<>();
+    //店铺变更同步配置
+    private ChangeSync changeSync = new ChangeSync();
+
+    @Data
+    public static class Compression {
+        //是否开启压缩
+        private boolean enabled = false;
+        //编码后超过该字节数才压缩
+        private int threshold = 1024;
+    }
+
+    @Data
+    public static class Near {
+        //是否开启本地缓存
+        private boolean enabled = false;
+        //按key前缀配置本地缓存，未配置的前缀不走本地缓存
+        private List<NearSpec> specs = new ArrayList<>();
+    }
+
+    @Data
+    public static class NearSpec {
+        //key前缀，例如 cache:shop:
+        private String prefix;
+        //最多缓存的条目数，超出后按访问频率淘汰
+        private int maxSize = 1000;
+        //条目写入后的最长存活时间
+        private Duration maxAge = Duration.ofSeconds(60);
+    }
+
+    @Data
+    public static class Bloom {
+        //是否开启布隆过滤器
+        private boolean enabled = false;
+        //按key前缀配置布隆过滤器
+        private List<BloomSpec> specs = new ArrayList<>();
+    }
+
+    @Data
+    public static class BloomSpec {
+        //key前缀，例如 cache:shop:
+        private String prefix;
+        //预计的数据量
+        private long expectedInsertions = 100000;
+        //期望的误判率
+        private double fpp = 0.01;
+    }
+
+    @Data
+    public static class Refresh {
+        //刷新线程数
+        private int threads = 4;
+        //刷新队列容量，队列满时丢弃刷新任务
+        private int queueCapacity = 1000;
+        //剩余逻辑过期时间小于ttl的该比例时提前刷新
+        private double refreshAheadRatio = 0.2;
+        //平均刷新耗时超过该值时视为数据库变慢，暂停提前刷新
+        private Duration slowThreshold = Duration.ofMillis(500);
+    }
+
+    @Data
+    public static class Ttl {
+        //未配置的前缀使用的抖动比例
+        private double defaultJitterRatio = 0.1;
+        //访问频率统计的容量（预计同时活跃的key数量）
+        private int sketchSize = 10000;
+        //按key前缀配置过期时间策略
+        private List<TtlSpec> specs = new ArrayList<>();
+    }
+
+    @Data
+    public static class TtlSpec {
+        //key前缀，例如 cache:shop:
+        private String prefix;
+        //在基础ttl上随机增加的比例，例如0.2表示增加0~20%
+        private double jitterRatio = 0.1;
+        //访问频率达到该值的key视为热点key，0表示不区分热点
+        private int hotThreshold = 0;
+        //热点key的ttl倍数
+        private double hotMultiplier = 2.0;
+    }
+
+    @Data
+    public static class WarmUp {
+        //项目启动时是否自动预热
+        private boolean enabled = true;
+        //每批读取和写入的行数
+        private int chunkSize = 500;
+    }
+
+    @Data
+    public static class HotKey {
+        //是否开启热点key探测
+        private boolean enabled = false;
+        //一个时间窗口内访问次数达到该值时升级为热点key（降到一半以下时降级）
+        private int threshold = 200;
+        //统计窗口，每个窗口结束时访问次数减半
+        private Duration window = Duration.ofSeconds(1);
+        //最多同时存在的热点key数量
+        private int maxHotKeys = 100;
+        //热点key本地副本的存活时间
+        private Duration localTtl = Duration.ofSeconds(3);
+        //访问频率统计的容量
+        private int sketchSize = 10000;
+        //参与探测的key前缀：本地副本是所有读取方共享的同一个对象，只能配置返回值不会被调用方修改的前缀
+        private List<String> prefixes = new ArrayList<>();
+    }
+
+    @Data
+    public static class Swr {
+        //按key前缀配置宽限期，未配置的前缀过期后阻塞等待重建
+        private List<SwrSpec> specs = new ArrayList<>();
+    }
+
+    @Data
+    public static class SwrSpec {
+        //key前缀，例如 cache:shop:
+        private String prefix;
+        //过期后继续保留旧数据的时长，重建期间未抢到锁的请求直接返回旧数据
+        private Duration grace = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class Invalidation {
+        //是否在事务提交后延迟再删除一次（延迟双删）
+        private boolean delayedDelete = true;
+        //第二次删除的延迟时间，应大于一次读请求回填缓存的耗时
+        private Duration delay = Duration.ofMillis(500);
+        //删除失败后的重试间隔
+        private Duration retryInterval = Duration.ofSeconds(1);
+        //最大重试次数
+        private int maxRetries = 5;
+        //重试队列容量，队列满时放弃重试，只能等待缓存过期
+        private int retryQueueCapacity = 10000;
+    }
+
+    @Data
+    public static class ClientSide {
+        //是否开启客户端缓存（需要redis 6及以上版本）
+        private boolean enabled = false;
+        //由redis追踪并推送失效消息的key前缀
+        private List<String> prefixes = new ArrayList<>();
+        //本地最多缓存的条目数，超出后淘汰最久未访问的
+        private int maxSize = 10000;
+        //追踪不可用时重新尝试开启的间隔
+        private Duration retryInterval = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class ShopType {
+        //检查redis中店铺分类版本号的间隔
+        private Duration pollInterval = Duration.ofSeconds(5);
+        //还没有可用快照时，查询失败的结果在本地保留的时间，期间不再查询数据库
+        private Duration failureBackoff = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class Response {
+        //是否缓存店铺详情的响应内容
+        private boolean enabled = false;
+    }
+
+    @Data
+    public static class MethodSpec {
+        //是否走缓存，false时直接执行原方法
+        private boolean enabled = true;
+        //缓存策略，未配置时使用注解中的策略
+        private CacheStrategy strategy;
+        //过期时间，未配置时使用注解中的过期时间
+        private Duration ttl;
+    }
+
+    @Data
+    public static class ChangeSync {
+        //是否开启店铺变更同步（处理批处理任务、手工SQL等绕过应用的修改）
+        private boolean enabled = false;
+        //同步间隔
+        private Duration interval = Duration.ofSeconds(5);
+        //每批查询的行数
+        private int batchSize = 500;
+        //每次同步最多处理的行数，剩余的留到下一次，保证一次同步的耗时远小于锁的过期时间
+        private int maxRowsPerRun = 5000;
+        //回扫时间：每次额外回扫数据库时间最近这段时间内、排在游标之前的行，覆盖修改时间早于游标但提交较晚的事务
+        //修改时间与提交时间相差超过该时间的事务会被永久漏掉（只能等缓存过期），应大于最长的店铺修改事务
+        private Duration overlap = Duration.ofSeconds(5);
+        //同步锁的过期时间（秒）
+        private long lockTtl = 30;
+    }
+}
@@ -0,0 +1,73 @@
+package com.jgdp.config;
+
+import com.jgdp.utils.BinaryCacheCodec;
+import com.jgdp.utils.CacheCodec;
+import com.jgdp.utils.CompressingCacheCodec;
+import com.jgdp.utils.JsonCacheCodec;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * Redis相关组件配置
+ */
+@Configuration
+public class RedisConfig {
+
+    /**
+     * Redis发布订阅的监听容器，各节点通过它接收缓存失效等广播消息
+     *
+     * @param connectionFactory
+     * @return
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
+    /**
+     * 缓存专用的RedisTemplate，key为字符串，value为原始字节（由CacheCodec负责编解码）
+     *
+     * @param connectionFactory
+     * @return
+     */
+    @Bean
+    public RedisTemplate<String, byte[]> cacheRedisTemplate(RedisConnectionFactory connectionFactory) {
+        RedisTemplate<String, byte[]> template = new RedisTemplate<>();
+        template.setConnectionFactory(connectionFactory);
+        template.setKeySerializer(RedisSerializer.string());
+        template.setValueSerializer(RedisSerializer.byteArray());
+        template.setHashKeySerializer(RedisSerializer.string());
+        template.setHashValueSerializer(RedisSerializer.byteArray());
+        return template;
+    }
+
+    /**
+     * 缓存值的编解码器，jgdp.cache.codec为json时使用JSON，否则使用二进制（JSON作为兜底），
+     * 开启压缩时在外层包装压缩编解码器
+     *
+     * @param cacheProperties
+     * @param meterRegistry
+     * @return
+     */
+    @Bean
+    public CacheCodec cacheCodec(CacheProperties cacheProperties, MeterRegistry meterRegistry) {
+        JsonCacheCodec jsonCodec = new JsonCacheCodec();
+        CacheCodec codec = "json".equalsIgnoreCase(cacheProperties.getCodec())
+                ? jsonCodec
+                : new BinaryCacheCodec(jsonCodec);
+        CacheProperties.Compression compression = cacheProperties.getCompression();
+        if (!compression.isEnabled()) {
+            return codec;
+        }
+        return new CompressingCacheCodec(codec, compression.getThreshold(), meterRegistry);
+    }
+}
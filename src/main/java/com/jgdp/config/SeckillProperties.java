@@ -0,0 +1,62 @@
+package com.jgdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 秒杀相关配置（对应配置文件中的 jgdp.seckill）
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "jgdp.seckill")
+public class SeckillProperties {
+
+    //秒杀模式：
+    //stream（lua脚本在redis中判断资格并预扣减库存，订单通过redis stream异步写入数据库）
+    //redis（lua脚本在redis中判断资格并预扣减库存，同步写入订单）
+    //db（查询数据库、加锁、数据库扣减库存）
+    private String mode = "redis";
+    //秒杀优惠券信息（秒杀时间）本地缓存的容量
+    private int voucherCacheSize = 1000;
+    //秒杀优惠券信息本地缓存的存活时间
+    private Duration voucherCacheTtl = Duration.ofSeconds(60);
+    //订单消息队列配置（stream模式）
+    private Stream stream = new Stream();
+    //库存分片配置
+    private Sharding sharding = new Sharding();
+
+    @Data
+    public static class Stream {
+        //消费者线程数
+        private int consumers = 2;
+        //每批写入数据库的最大订单数
+        private int batchSize = 100;
+        //凑批的最长等待时间：读到第一条消息后最多再等待该时长，达到batch-size或超时后写入数据库
+        private Duration batchLinger = Duration.ofMillis(20);
+        //没有消息时阻塞等待的时长
+        private Duration block = Duration.ofSeconds(2);
+        //消息投递后超过该时长未确认，视为消费者已宕机，由其他消费者认领
+        private Duration minIdle = Duration.ofSeconds(30);
+        //检查未确认消息的间隔
+        private Duration recoveryInterval = Duration.ofSeconds(10);
+        //每次检查的未确认消息数
+        private int recoveryBatchSize = 100;
+        //最大投递次数，超过后转入死信队列
+        private int maxDeliveries = 5;
+    }
+
+    @Data
+    public static class Sharding {
+        //需要分片的优惠券：优惠券id -> 分片数，未配置的优惠券使用单个库存key
+        private Map<Long, Integer> vouchers = new HashMap<>();
+        //检查分片之间库存是否均衡的间隔
+        private Duration rebalanceInterval = Duration.ofSeconds(1);
+    }
+}
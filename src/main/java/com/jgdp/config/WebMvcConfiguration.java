@@ -42,7 +42,10 @@ public class WebMvcConfiguration extends WebMvcConfigurationSupport {
         registry.addInterceptor(loginInterceptor)
                 .addPathPatterns(
                         "/user/**",
-                        "/blog/**"
+                        "/blog/**",
+                        //缓存预热会全表扫描、删除分类缓存会让所有节点重新加载，需要登录
+                        "/cache/warmup",
+                        "/cache/shop-type/evict"
                 )
                 .excludePathPatterns(
                         "/user/code",
@@ -1,19 +1,22 @@
 package com.jgdp.controller;
 
 
+import cn.hutool.core.bean.BeanUtil;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.jgdp.dto.Result;
 import com.jgdp.dto.UserDTO;
 import com.jgdp.entity.Blog;
-import com.jgdp.entity.User;
 import com.jgdp.service.IBlogService;
 import com.jgdp.service.IUserService;
+import com.jgdp.utils.CacheHandleUtils;
+import com.jgdp.utils.RedisConstants;
 import com.jgdp.utils.SystemConstants;
 import com.jgdp.utils.UserHolder;
 import jakarta.annotation.Resource;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <p>
@@ -31,6 +34,8 @@ public class BlogController {
     private IBlogService blogService;
     @Resource
     private IUserService userService;
+    @Resource
+    private CacheHandleUtils cacheHandleUtils;
 
     @PostMapping
     public Result saveBlog(@RequestBody Blog blog) {
@@ -65,19 +70,21 @@ public class BlogController {
 
     @GetMapping("/hot")
     public Result queryHotBlog(@RequestParam(value = "current", defaultValue = "1") Integer current) {
-        // 根据用户查询
-        Page<Blog> page = blogService.query()
-                .orderByDesc("liked")
-                .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
-        // 获取当前页数据
-        List<Blog> records = page.getRecords();
-        // 查询用户
-        records.forEach(blog ->{
-            Long userId = blog.getUserId();
-            User user = userService.getById(userId);
-            blog.setName(user.getNickName());
-            blog.setIcon(user.getIcon());
-        });
+        // 查询当前页数据（带缓存）
+        List<Blog> records = blogService.queryHotPage(current);
+        // 批量查询用户（一次MGET + 未命中时一次IN查询）
+        List<Long> userIds = records.stream().map(Blog::getUserId).toList();
+        List<UserDTO> users = cacheHandleUtils.queryBatch(
+                RedisConstants.CACHE_USER_KEY, userIds, UserDTO.class,
+                ids -> BeanUtil.copyToList(userService.listByIds(ids), UserDTO.class), UserDTO::getId,
+                RedisConstants.CACHE_USER_TTL, TimeUnit.MINUTES);
+        for (int i = 0; i < records.size(); i++) {
+            UserDTO user = users.get(i);
+            if (user != null) {
+                records.get(i).setName(user.getNickName());
+                records.get(i).setIcon(user.getIcon());
+            }
+        }
         return Result.ok(records);
     }
 }
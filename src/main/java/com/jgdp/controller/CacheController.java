@@ -0,0 +1,80 @@
+package com.jgdp.controller;
+
+import com.jgdp.dto.Result;
+import com.jgdp.service.IShopTypeService;
+import com.jgdp.utils.CacheTtlPolicy;
+import com.jgdp.utils.CacheWarmer;
+import com.jgdp.utils.HotKeyDetector;
+import jakarta.annotation.Resource;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 缓存运维相关接口
+ */
+@RestController
+@RequestMapping("/cache")
+public class CacheController {
+
+    @Resource
+    private CacheTtlPolicy ttlPolicy;
+    @Resource
+    private CacheWarmer cacheWarmer;
+    @Resource
+    private HotKeyDetector hotKeyDetector;
+    @Resource
+    private IShopTypeService shopTypeService;
+
+    /**
+     * 查询本节点写入的缓存在未来每分钟的过期数量，用于观察过期时间是否扎堆
+     * @return 分钟 -> 将要过期的key数量
+     */
+    @GetMapping("/ttl/histogram")
+    public Result ttlHistogram() {
+        return Result.ok(ttlPolicy.expiryHistogram());
+    }
+
+    /**
+     * 查询本节点当前的热点key
+     * @return 热点key及当前窗口的访问次数
+     */
+    @GetMapping("/hot-keys")
+    public Result hotKeys() {
+        return Result.ok(hotKeyDetector.hotKeys());
+    }
+
+    /**
+     * 店铺分类修改后调用：删除缓存并递增版本号，各节点刷新本地快照
+     * @return
+     */
+    @PostMapping("/shop-type/evict")
+    public Result evictShopType() {
+        shopTypeService.evictCache();
+        return Result.ok();
+    }
+
+    /**
+     * 手动触发缓存预热
+     * @return
+     */
+    @PostMapping("/warmup")
+    public Result warmUp() {
+        if (!cacheWarmer.start()) {
+            return Result.fail("缓存预热正在进行中!");
+        }
+        return Result.ok();
+    }
+
+    /**
+     * 查询缓存预热进度
+     * @return 已写入行数、吞吐量、耗时
+     */
+    @GetMapping("/warmup")
+    public Result warmUpReport() {
+        return Result.ok(cacheWarmer.getReport());
+    }
+}
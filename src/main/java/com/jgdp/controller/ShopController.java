@@ -6,8 +6,12 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.jgdp.dto.Result;
 import com.jgdp.entity.Shop;
 import com.jgdp.service.IShopService;
+import com.jgdp.utils.BloomFilterRegistry;
+import com.jgdp.utils.RedisConstants;
 import com.jgdp.utils.SystemConstants;
 import jakarta.annotation.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 /**
@@ -24,15 +28,19 @@ public class ShopController {
 
     @Resource
     public IShopService shopService;
+    @Resource
+    private BloomFilterRegistry bloomFilterRegistry;
 
     /**
-     * 根据id查询商铺信息
+     * 根据id查询商铺信息（直接输出序列化好的响应内容）
      * @param id 商铺id
      * @return 商铺详情数据
      */
     @GetMapping("/{id}")
-    public Result queryShopById(@PathVariable("id") Long id) {
-        return shopService.queryById(id);
+    public ResponseEntity<byte[]> queryShopById(@PathVariable("id") Long id) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(shopService.queryResponseById(id));
     }
 
     /**
@@ -44,6 +52,8 @@ public class ShopController {
     public Result saveShop(@RequestBody Shop shop) {
         // 写入数据库
         shopService.save(shop);
+        // 写入布隆过滤器
+        bloomFilterRegistry.put(RedisConstants.CACHE_SHOP_KEY, shop.getId());
         // 返回店铺id
         return Result.ok(shop.getId());
     }
@@ -1,10 +1,16 @@
 package com.jgdp.controller;
 
 
-import com.jgdp.dto.Result;
+import cn.hutool.core.util.StrUtil;
+import com.jgdp.dto.ShopTypeSnapshot;
 import com.jgdp.service.IShopTypeService;
 import jakarta.annotation.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -23,11 +29,42 @@ public class ShopTypeController {
     private IShopTypeService typeService;
 
     /**
-     * 查询店铺分类
+     * 查询店铺分类（直接返回本地快照，客户端携带的ETag未变化时返回304）
+     * @param ifNoneMatch 客户端缓存的ETag
      * @return
      */
     @GetMapping("list")
-    public Result queryTypeList() {
-        return typeService.queryList();
+    public ResponseEntity<byte[]> queryTypeList(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        ShopTypeSnapshot snapshot = typeService.snapshot();
+        if (matches(ifNoneMatch, snapshot.getEtag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(snapshot.getEtag()).build();
+        }
+        return ResponseEntity.ok()
+                .eTag(snapshot.getEtag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(snapshot.getBody());
+    }
+
+    /**
+     * 判断If-None-Match是否命中：支持*和逗号分隔的多个ETag，按弱比较忽略W/前缀
+     * @param ifNoneMatch
+     * @param etag
+     * @return
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (StrUtil.isBlank(ifNoneMatch)) {
+            return false;
+        }
+        if ("*".equals(ifNoneMatch.trim())) {
+            return true;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = StrUtil.removePrefix(tag.trim(), "W/");
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
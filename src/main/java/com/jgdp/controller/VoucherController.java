@@ -4,6 +4,8 @@ package com.jgdp.controller;
 import com.jgdp.dto.Result;
 import com.jgdp.entity.Voucher;
 import com.jgdp.service.IVoucherService;
+import com.jgdp.utils.CacheInvalidator;
+import com.jgdp.utils.RedisConstants;
 import jakarta.annotation.Resource;
 import org.springframework.web.bind.annotation.*;
 
@@ -21,6 +23,8 @@ public class VoucherController {
 
     @Resource
     private IVoucherService voucherService;
+    @Resource
+    private CacheInvalidator cacheInvalidator;
 
     /**
      * 新增普通券
@@ -30,6 +34,8 @@ public class VoucherController {
     @PostMapping
     public Result addVoucher(@RequestBody Voucher voucher) {
         voucherService.save(voucher);
+        // 删除店铺的优惠券列表缓存
+        cacheInvalidator.invalidate(RedisConstants.CACHE_SHOP_VOUCHER_KEY + voucher.getShopId());
         return Result.ok(voucher.getId());
     }
 
@@ -0,0 +1,20 @@
+package com.jgdp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 热点key信息
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HotKeyDTO {
+    //缓存key
+    private String key;
+    //当前窗口内估算的访问次数
+    private Integer count;
+}
@@ -0,0 +1,21 @@
+package com.jgdp.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 店铺分类列表的不可变快照：预先序列化好的响应内容 + 版本号
+ * 快照创建后不再修改，body由所有请求共享，调用方不能修改其内容
+ */
+@Getter
+@AllArgsConstructor
+public class ShopTypeSnapshot {
+    //redis中的版本号
+    private final String version;
+    //响应的ETag
+    private final String etag;
+    //序列化好的Result JSON
+    private final byte[] body;
+}
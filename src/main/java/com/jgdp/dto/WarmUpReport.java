@@ -0,0 +1,28 @@
+package com.jgdp.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 缓存预热的进度
+ */
+@Data
+public class WarmUpReport {
+    //是否正在预热
+    private Boolean running;
+    //当前正在预热的表
+    private String table;
+    //已写入的行数
+    private Long rows;
+    //吞吐量（行/秒）
+    private Long rowsPerSecond;
+    //耗时（毫秒）
+    private Long durationMillis;
+    //开始时间
+    private LocalDateTime startTime;
+    //失败原因
+    private String errorMsg;
+}
@@ -2,6 +2,14 @@ package com.jgdp.mapper;
 
 import com.jgdp.entity.Shop;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.mapping.ResultSetType;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * <p>
@@ -13,4 +21,38 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface ShopMapper extends BaseMapper<Shop> {
 
+    /**
+     * 流式查询所有店铺（fetchSize为Integer.MIN_VALUE时MySQL驱动逐行返回，不会一次性加载到内存）
+     * 必须在事务中使用，事务结束时游标关闭
+     * @return
+     */
+    @Select("SELECT * FROM tb_shop")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    Cursor<Shop> scanAll();
+
+    /**
+     * 按(update_time, id)顺序查询某个位置之后修改过的店铺
+     * 使用行值比较，可以走idx_update_time_id索引的范围扫描，不需要全表扫描和排序
+     * @param time 上一批最后一行的修改时间
+     * @param id 上一批最后一行的id
+     * @param limit 每批的行数
+     * @return
+     */
+    @Select("SELECT * FROM tb_shop WHERE (update_time, id) > (#{time}, #{id}) " +
+            "ORDER BY update_time, id LIMIT #{limit}")
+    List<Shop> scanChanged(@Param("time") LocalDateTime time, @Param("id") long id, @Param("limit") int limit);
+
+    /**
+     * 查询店铺表中最新的修改时间（以数据库时间为准，避免与应用服务器的时钟误差）
+     * @return
+     */
+    @Select("SELECT MAX(update_time) FROM tb_shop")
+    LocalDateTime selectMaxUpdateTime();
+
+    /**
+     * 查询数据库的当前时间
+     * @return
+     */
+    @Select("SELECT NOW()")
+    LocalDateTime selectNow();
 }
@@ -2,6 +2,9 @@ package com.jgdp.mapper;
 
 import com.jgdp.entity.VoucherOrder;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * <p>
@@ -13,4 +16,10 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface VoucherOrderMapper extends BaseMapper<VoucherOrder> {
 
+    /**
+     * 批量插入订单（一条多行INSERT语句）
+     * @param orders
+     * @return
+     */
+    int insertBatch(@Param("orders") List<VoucherOrder> orders);
 }
@@ -3,6 +3,8 @@ package com.jgdp.service;
 import com.jgdp.entity.Blog;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+
 /**
  * <p>
  *  服务类
@@ -13,4 +15,10 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface IBlogService extends IService<Blog> {
 
+    /**
+     * 按点赞数分页查询热门博客（带缓存）
+     * @param current 页码
+     * @return
+     */
+    List<Blog> queryHotPage(Integer current);
 }
@@ -4,6 +4,8 @@ import com.jgdp.dto.Result;
 import com.jgdp.entity.Shop;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.function.Consumer;
+
 /**
  * <p>
  *  服务类
@@ -21,10 +23,31 @@ public interface IShopService extends IService<Shop> {
      */
     Result queryById(Long id);
 
+    /**
+     * 根据id查询商铺（带缓存）
+     * @param id
+     * @return 不存在时返回null
+     */
+    Shop queryShop(Long id);
+
+    /**
+     * 根据id查询商铺信息，返回序列化好的响应内容
+     * @param id
+     * @return
+     */
+    byte[] queryResponseById(Long id);
+
     /**
      * 更新店铺信息
      * @param shop
      * @return
      */
     Result update(Shop shop);
+
+    /**
+     * 按id顺序分批遍历所有店铺id
+     * @param batchSize 每批查询的数量
+     * @param consumer 接收店铺id
+     */
+    void scanIds(int batchSize, Consumer<Long> consumer);
 }
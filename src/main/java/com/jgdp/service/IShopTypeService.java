@@ -1,6 +1,7 @@
 package com.jgdp.service;
 
 import com.jgdp.dto.Result;
+import com.jgdp.dto.ShopTypeSnapshot;
 import com.jgdp.entity.ShopType;
 import com.baomidou.mybatisplus.extension.service.IService;
 
@@ -19,4 +20,15 @@ public interface IShopTypeService extends IService<ShopType> {
      * @return
      */
     Result queryList();
+
+    /**
+     * 获取店铺分类列表的本地快照（版本号变化时自动刷新）
+     * @return
+     */
+    ShopTypeSnapshot snapshot();
+
+    /**
+     * 删除店铺分类缓存并递增版本号，各节点随后刷新本地快照
+     */
+    void evictCache();
 }
@@ -13,4 +13,10 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface IUserInfoService extends IService<UserInfo> {
 
+    /**
+     * 根据用户id查询用户详情（带缓存）
+     * @param userId
+     * @return 没有详情时返回null
+     */
+    UserInfo queryUserInfo(Long userId);
 }
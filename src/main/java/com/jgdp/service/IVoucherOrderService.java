@@ -4,6 +4,8 @@ import com.jgdp.dto.Result;
 import com.jgdp.entity.VoucherOrder;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+
 /**
  * <p>
  *  服务类
@@ -17,4 +19,8 @@ public interface IVoucherOrderService extends IService<VoucherOrder> {
     Result seckillVoucher(Long voucherId);
 
     Result creatVoucherOrder(Long voucherId);
+
+    boolean saveSeckillOrder(VoucherOrder voucherOrder);
+
+    int saveSeckillOrders(List<VoucherOrder> voucherOrders);
 }
@@ -4,6 +4,8 @@ import com.jgdp.dto.Result;
 import com.jgdp.entity.Voucher;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+
 /**
  * <p>
  *  服务类
@@ -16,5 +18,12 @@ public interface IVoucherService extends IService<Voucher> {
 
     Result queryVoucherOfShop(Long shopId);
 
+    /**
+     * 查询店铺的优惠券列表（带缓存）
+     * @param shopId
+     * @return
+     */
+    List<Voucher> listVoucherOfShop(Long shopId);
+
     void addSeckillVoucher(Voucher voucher);
 }
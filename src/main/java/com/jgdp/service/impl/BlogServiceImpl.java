@@ -1,11 +1,18 @@
 package com.jgdp.service.impl;
 
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.jgdp.annotation.CacheStrategy;
+import com.jgdp.annotation.Cached;
 import com.jgdp.entity.Blog;
 import com.jgdp.mapper.BlogMapper;
 import com.jgdp.service.IBlogService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.jgdp.utils.RedisConstants;
+import com.jgdp.utils.SystemConstants;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 /**
  * <p>
  *  服务实现类
@@ -17,4 +24,19 @@ import org.springframework.stereotype.Service;
 @Service
 public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IBlogService {
 
+    /**
+     * 按点赞数分页查询热门博客（带缓存）
+     * @param current 页码
+     * @return
+     */
+    @Override
+    @Cached(name = "blog-hot", keyPrefix = RedisConstants.CACHE_BLOG_HOT_KEY,
+            strategy = CacheStrategy.PASS_THROUGH, ttl = RedisConstants.CACHE_BLOG_HOT_TTL,
+            elementType = Blog.class)
+    public List<Blog> queryHotPage(Integer current) {
+        Page<Blog> page = query()
+                .orderByDesc("liked")
+                .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
+        return page.getRecords();
+    }
 }
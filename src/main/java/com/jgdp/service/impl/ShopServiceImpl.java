@@ -1,19 +1,29 @@
 package com.jgdp.service.impl;
 
+import cn.hutool.core.util.BooleanUtil;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jgdp.annotation.CacheStrategy;
+import com.jgdp.annotation.Cached;
+import com.jgdp.config.CacheProperties;
 import com.jgdp.dto.Result;
 import com.jgdp.entity.Shop;
 import com.jgdp.mapper.ShopMapper;
 import com.jgdp.service.IShopService;
 import com.jgdp.utils.CacheHandleUtils;
+import com.jgdp.utils.CacheInvalidator;
 import com.jgdp.utils.RedisConstants;
 import jakarta.annotation.Resource;
+import org.springframework.aop.framework.AopContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * <p>
@@ -30,6 +40,12 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
     private StringRedisTemplate stringRedisTemplate;
     @Autowired
     private CacheHandleUtils cacheHandleUtils;
+    @Autowired
+    private CacheInvalidator cacheInvalidator;
+    @Autowired
+    private CacheProperties cacheProperties;
+    @Autowired
+    private ObjectMapper objectMapper;
 //    //创建线程池
 //    private static final ExecutorService CACHE_REBUILD_EXECUTOR = Executors.newFixedThreadPool(10);
 
@@ -41,33 +57,64 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
      */
     @Override
     public Result queryById(Long id) {
-        //解决缓存穿透问题
-        //Shop shop = queryWithPassThrough(id);
-//        Shop shop = cacheHandleUtils.queryWithPassThrough(
-//                RedisConstants.CACHE_SHOP_KEY, id, Shop.class, this::getById,
-//                RedisConstants.CACHE_SHOP_TTL, TimeUnit.MINUTES);
-
-        //互斥锁解决缓存击穿问题
-        //Shop shop = queryWithMutex(id);
-        Shop shop = cacheHandleUtils.queryWithMutex(
-                RedisConstants.CACHE_SHOP_KEY, id, Shop.class, this::getById,
-                RedisConstants.CACHE_SHOP_TTL, TimeUnit.MINUTES);
-
-        //逻辑过期解决缓存击穿问题
-        //Shop shop = queryWithLogicalExpire(id);
-//        Shop shop = cacheHandleUtils.queryWithLogicalExpire(
-//                RedisConstants.CACHE_SHOP_KEY, id, Shop.class, this::getById,
-//                RedisConstants.CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        //通过代理对象调用，缓存切面才会生效（缓存策略由@Cached和配置文件 jgdp.cache.methods.shop 决定）
+        IShopService proxy = (IShopService) AopContext.currentProxy();
+        Shop shop = proxy.queryShop(id);
 
         //判断是否查到数据
         if (shop == null) {
             return Result.fail("店铺不存在!!");
         }
 
-        //8.返回
+        //返回
         return Result.ok(shop);
     }
 
+    /**
+     * 根据id查询商铺（带缓存）
+     *
+     * @param id
+     * @return
+     */
+    @Override
+    @Cached(name = "shop", keyPrefix = RedisConstants.CACHE_SHOP_KEY,
+            strategy = CacheStrategy.MUTEX, ttl = RedisConstants.CACHE_SHOP_TTL)
+    public Shop queryShop(Long id) {
+        return getById(id);
+    }
+
+    /**
+     * 根据id查询商铺信息，返回序列化好的Result JSON
+     * 开启响应级缓存时，命中后直接返回缓存的字节，省去反序列化Shop和序列化Result
+     *
+     * @param id
+     * @return
+     */
+    @Override
+    public byte[] queryResponseById(Long id) {
+        if (!cacheProperties.getResponse().isEnabled()) {
+            return toJson(queryById(id));
+        }
+        byte[] body = cacheHandleUtils.queryResponse(
+                RedisConstants.CACHE_SHOP_RESP_KEY, id, this::renderShop,
+                RedisConstants.CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        //店铺不存在的结果不缓存（空值已经由店铺缓存负责）
+        return body != null ? body : toJson(Result.fail("店铺不存在!!"));
+    }
+
+    private byte[] renderShop(Long id) {
+        Result result = queryById(id);
+        return BooleanUtil.isTrue(result.getSuccess()) ? toJson(result) : null;
+    }
+
+    private byte[] toJson(Result result) {
+        try {
+            return objectMapper.writeValueAsBytes(result);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("店铺信息序列化失败", e);
+        }
+    }
+
     /**
      * 更新店铺信息
      *
@@ -86,13 +133,39 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
         //1.更新数据库
         updateById(shop);
 
-        //2.删除redis缓存
-        stringRedisTemplate.delete(RedisConstants.CACHE_SHOP_KEY + id);
+        //2.事务提交后删除redis缓存（同时通知各节点清理本地缓存），失败时自动重试
+        cacheInvalidator.invalidate(RedisConstants.CACHE_SHOP_KEY + id);
+        cacheInvalidator.invalidate(RedisConstants.CACHE_SHOP_RESP_KEY + id);
 
         //3.返回
         return Result.ok();
     }
 
+    /**
+     * 按id顺序分批遍历所有店铺id（基于上一批的最大id翻页，避免深分页）
+     *
+     * @param batchSize
+     * @param consumer
+     */
+    @Override
+    public void scanIds(int batchSize, Consumer<Long> consumer) {
+        long lastId = 0;
+        while (true) {
+            //select id from tb_shop where id > ? order by id limit ?
+            List<Shop> shops = query()
+                    .select("id")
+                    .gt("id", lastId)
+                    .orderByAsc("id")
+                    .last("limit " + batchSize)
+                    .list();
+            shops.forEach(shop -> consumer.accept(shop.getId()));
+            if (shops.size() < batchSize) {
+                return;
+            }
+            lastId = shops.get(shops.size() - 1).getId();
+        }
+    }
+
     /**
      * 根据id查询店铺数据防止缓存穿透的解决方案
      *
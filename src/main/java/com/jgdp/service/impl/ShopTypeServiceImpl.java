@@ -1,18 +1,28 @@
 package com.jgdp.service.impl;
 
+import cn.hutool.core.util.BooleanUtil;
 import cn.hutool.core.util.StrUtil;
+import cn.hutool.crypto.digest.DigestUtil;
 import cn.hutool.json.JSONUtil;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jgdp.config.CacheProperties;
 import com.jgdp.dto.Result;
+import com.jgdp.dto.ShopTypeSnapshot;
 import com.jgdp.entity.ShopType;
 import com.jgdp.mapper.ShopTypeMapper;
 import com.jgdp.service.IShopTypeService;
+import com.jgdp.utils.ClientSideCache;
 import com.jgdp.utils.RedisConstants;
 import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 /**
@@ -23,11 +33,24 @@ import java.util.List;
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class ShopTypeServiceImpl extends ServiceImpl<ShopTypeMapper, ShopType> implements IShopTypeService {
 
     @Resource
     private StringRedisTemplate stringRedisTemplate;
+    @Resource
+    private ClientSideCache clientSideCache;
+    @Resource
+    private ObjectMapper objectMapper;
+    @Resource
+    private CacheProperties cacheProperties;
+    //店铺分类列表的本地快照
+    private volatile ShopTypeSnapshot snapshot;
+    //还没有可用快照时，最近一次查询失败的结果，退避期内直接返回
+    private volatile ShopTypeSnapshot failed;
+    //失败结果的过期时间（毫秒时间戳）
+    private volatile long retryAt;
 
     /**
      * 查询店铺分类
@@ -37,7 +60,10 @@ public class ShopTypeServiceImpl extends ServiceImpl<ShopTypeMapper, ShopType> i
     public Result queryList() {
         //1.从redis中查询店铺分类缓存
         String shopTypeKey = RedisConstants.CACHE_SHOP_TYPE_KEY;
-        String shopTypeJson = stringRedisTemplate.opsForValue().get(shopTypeKey);
+        //开启客户端缓存时优先读本地，分类数据变化时由redis推送失效消息
+        String shopTypeJson = clientSideCache.supports(shopTypeKey)
+                ? StrUtil.str(clientSideCache.get(shopTypeKey), StandardCharsets.UTF_8)
+                : stringRedisTemplate.opsForValue().get(shopTypeKey);
 
         //2.判断是否存在
         if (StrUtil.isNotBlank(shopTypeJson)) {
@@ -61,4 +87,97 @@ public class ShopTypeServiceImpl extends ServiceImpl<ShopTypeMapper, ShopType> i
         //8.返回
         return Result.ok(shopTypeList);
     }
+
+    /**
+     * 获取店铺分类列表的本地快照
+     * @return
+     */
+    @Override
+    public ShopTypeSnapshot snapshot() {
+        ShopTypeSnapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        return loadSnapshot();
+    }
+
+    /**
+     * 删除店铺分类缓存并递增版本号
+     */
+    @Override
+    public void evictCache() {
+        stringRedisTemplate.delete(RedisConstants.CACHE_SHOP_TYPE_KEY);
+        stringRedisTemplate.opsForValue().increment(RedisConstants.CACHE_SHOP_TYPE_VERSION_KEY);
+        refreshSnapshot();
+    }
+
+    /**
+     * 定时检查redis中的版本号，变化时刷新本地快照
+     */
+    @Scheduled(fixedDelayString = "${jgdp.cache.shop-type.poll-interval:5s}")
+    public void checkVersion() {
+        ShopTypeSnapshot current = snapshot;
+        if (current != null && !current.getVersion().equals(readVersion())) {
+            refreshSnapshot();
+        }
+    }
+
+    /**
+     * 还没有可用快照时加载快照，查询失败的结果在退避期内直接返回，避免数据库故障时每个请求都排队查询
+     * @return
+     */
+    private synchronized ShopTypeSnapshot loadSnapshot() {
+        //1.等待锁期间其他线程已经加载成功，或者失败结果还在退避期内
+        if (snapshot != null) {
+            return snapshot;
+        }
+        if (failed != null && System.currentTimeMillis() < retryAt) {
+            return failed;
+        }
+        //2.重新查询
+        return refreshSnapshot();
+    }
+
+    /**
+     * 重新查询店铺分类并生成快照，查询失败时保留旧快照
+     * @return
+     */
+    private synchronized ShopTypeSnapshot refreshSnapshot() {
+        //1.先读版本号再查数据，期间发生变化时下一次检查会再刷新
+        String version;
+        Result result;
+        try {
+            version = readVersion();
+            result = queryList();
+        } catch (RuntimeException e) {
+            log.warn("店铺分类查询失败", e);
+            version = "0";
+            result = Result.fail("查询店铺分类异常...");
+        }
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(result);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("店铺分类序列化失败", e);
+        }
+        ShopTypeSnapshot fresh = new ShopTypeSnapshot(
+                version, "\"" + version + "-" + DigestUtil.md5Hex(body) + "\"", body);
+        if (BooleanUtil.isTrue(result.getSuccess())) {
+            snapshot = fresh;
+            failed = null;
+            return fresh;
+        }
+        //2.查询失败：保留上一次成功的快照；还没有快照时缓存失败结果，退避期过后再查询
+        if (snapshot != null) {
+            return snapshot;
+        }
+        failed = fresh;
+        retryAt = System.currentTimeMillis() + cacheProperties.getShopType().getFailureBackoff().toMillis();
+        return fresh;
+    }
+
+    private String readVersion() {
+        String version = stringRedisTemplate.opsForValue().get(RedisConstants.CACHE_SHOP_TYPE_VERSION_KEY);
+        return version == null ? "0" : version;
+    }
 }
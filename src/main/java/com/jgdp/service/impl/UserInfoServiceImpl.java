@@ -1,8 +1,11 @@
 package com.jgdp.service.impl;
 
+import com.jgdp.annotation.CacheStrategy;
+import com.jgdp.annotation.Cached;
 import com.jgdp.entity.UserInfo;
 import com.jgdp.mapper.UserInfoMapper;
 import com.jgdp.service.IUserInfoService;
+import com.jgdp.utils.RedisConstants;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import org.springframework.stereotype.Service;
 
@@ -17,4 +20,21 @@ import org.springframework.stereotype.Service;
 @Service
 public class UserInfoServiceImpl extends ServiceImpl<UserInfoMapper, UserInfo> implements IUserInfoService {
 
+    /**
+     * 根据用户id查询用户详情（带缓存）
+     * @param userId
+     * @return
+     */
+    @Override
+    @Cached(name = "user-info", keyPrefix = RedisConstants.CACHE_USER_INFO_KEY,
+            strategy = CacheStrategy.PASS_THROUGH, ttl = RedisConstants.CACHE_USER_INFO_TTL)
+    public UserInfo queryUserInfo(Long userId) {
+        UserInfo info = getById(userId);
+        if (info != null) {
+            //时间字段不对外展示，也不写入缓存
+            info.setCreateTime(null);
+            info.setUpdateTime(null);
+        }
+        return info;
+    }
 }
@@ -1,6 +1,7 @@
 package com.jgdp.service.impl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.jgdp.config.SeckillProperties;
 import com.jgdp.dto.Result;
 import com.jgdp.entity.SeckillVoucher;
 import com.jgdp.entity.VoucherOrder;
@@ -9,6 +10,8 @@ import com.jgdp.service.ISeckillVoucherService;
 import com.jgdp.service.IVoucherOrderService;
 import com.jgdp.utils.RedisConstants;
 import com.jgdp.utils.RedisIdBuilder;
+import com.jgdp.utils.SeckillStockManager;
+import com.jgdp.utils.SeckillVoucherCache;
 import com.jgdp.utils.SimpleRedisLock;
 import com.jgdp.utils.UserHolder;
 import org.springframework.aop.framework.AopContext;
@@ -18,6 +21,12 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 /**
  * <p>
@@ -36,6 +45,12 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
     private RedisIdBuilder redisIdBuilder;
     @Autowired
     private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private SeckillStockManager seckillStockManager;
+    @Autowired
+    private SeckillProperties seckillProperties;
+    @Autowired
+    private SeckillVoucherCache seckillVoucherCache;
 
     /**
      * 秒杀优惠券
@@ -45,27 +60,159 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
      */
     @Override
     public Result seckillVoucher(Long voucherId) {
-        //1.查询优惠券信息
-        SeckillVoucher seckillVoucher = seckillVoucherService.getById(voucherId);
-
-        //2.判断秒杀是否开始
+        //1.已售罄的优惠券直接返回，不访问redis和数据库
+        if (seckillVoucherCache.isSoldOut(voucherId)) {
+            return Result.fail("库存不足!");
+        }
+        //2.从本地缓存查询优惠券信息，判断秒杀时间
+        SeckillVoucher seckillVoucher = seckillVoucherCache.get(voucherId);
+        if (seckillVoucher == null) {
+            return Result.fail("优惠券不存在!");
+        }
         //秒杀开始时间是否在当前时间之后
         if (seckillVoucher.getBeginTime().isAfter(LocalDateTime.now())) {
             return Result.fail("秒杀尚未开始!");
         }
-
-        //3.判断秒杀是否结束
         //秒杀结束时间是否在当前时间之前
         if (seckillVoucher.getEndTime().isBefore(LocalDateTime.now())) {
             return Result.fail("秒杀已经结束!");
         }
+        if ("db".equals(seckillProperties.getMode())) {
+            return seckillVoucherWithLock(voucherId);
+        }
 
-        //4.判断库存是否充足
-        Integer stock = seckillVoucher.getStock();
-        if (stock < 1) {
-            return Result.fail("库存不足!");
+        //3.在redis中判断秒杀资格并预扣减库存（stream模式下同时写入订单消息）
+        Long userId = UserHolder.getUser().getId();
+        long orderId = redisIdBuilder.nextId("order");
+        boolean async = "stream".equals(seckillProperties.getMode());
+        int result = seckillStockManager.tryDeduct(voucherId, userId, orderId,
+                async ? RedisConstants.SECKILL_ORDER_STREAM_KEY : null);
+        switch (result) {
+            case SeckillStockManager.SUCCESS:
+                break;
+            case SeckillStockManager.SUCCESS_SOLD_OUT:
+                //抢到了最后一件，通知所有节点已售罄
+                seckillVoucherCache.markSoldOut(voucherId);
+                break;
+            case SeckillStockManager.NOT_STARTED:
+                return Result.fail("秒杀尚未开始!");
+            case SeckillStockManager.ENDED:
+                return Result.fail("秒杀已经结束!");
+            case SeckillStockManager.REPEAT:
+                return Result.fail("每位用户仅限购买一次!!");
+            case SeckillStockManager.NO_STOCK_MOVING:
+                //库存正在分片之间移动，不标记售罄
+                return Result.fail("库存不足，请稍后重试!");
+            default:
+                seckillVoucherCache.markSoldOut(voucherId);
+                return Result.fail("库存不足!");
+        }
+
+        //4.stream模式下订单由消费者异步写入数据库，直接返回订单id
+        if (async) {
+            return Result.ok(orderId);
+        }
+
+        //5.创建订单
+        VoucherOrder voucherOrder = new VoucherOrder();
+        voucherOrder.setId(orderId);
+        voucherOrder.setUserId(userId);
+        voucherOrder.setVoucherId(voucherId);
+
+        //6.保存订单，失败时回滚redis中的预扣减（归还了库存，清除售罄标记）
+        boolean success;
+        try {
+            IVoucherOrderService proxy = (IVoucherOrderService) AopContext.currentProxy();
+            success = proxy.saveSeckillOrder(voucherOrder);
+        } catch (RuntimeException e) {
+            seckillStockManager.rollback(voucherId, userId);
+            seckillVoucherCache.clearSoldOut(voucherId);
+            throw e;
+        }
+        if (!success) {
+            seckillStockManager.rollback(voucherId, userId);
+            seckillVoucherCache.clearSoldOut(voucherId);
+            return Result.fail("系统繁忙，请稍后重试...");
+        }
+        return Result.ok(orderId);
+    }
+
+    /**
+     * 保存秒杀订单（资格已经在redis中判断过，这里只扣减数据库库存并写入订单）
+     *
+     * @param voucherOrder
+     * @return 订单是否已保存（数据库库存不足时返回false）
+     */
+    @Override
+    @Transactional
+    public boolean saveSeckillOrder(VoucherOrder voucherOrder) {
+        //订单已存在（消息重复投递），不再重复扣减库存
+        if (getById(voucherOrder.getId()) != null) {
+            return true;
         }
+        //扣减库存
+        boolean success = seckillVoucherService.update()
+                .setSql("stock = stock - 1")
+                .eq("voucher_id", voucherOrder.getVoucherId())
+                .gt("stock", 0)
+                .update();
+        if (!success) {
+            return false;
+        }
+        //保存订单
+        save(voucherOrder);
+        return true;
+    }
 
+    /**
+     * 批量保存秒杀订单（组提交）：一条多行INSERT写入订单，每个优惠券只执行一次 stock = stock - k，在同一个事务中完成
+     * 任意一个优惠券的数据库库存不足时整批回滚，由调用方逐条重新处理
+     *
+     * @param voucherOrders
+     * @return 实际写入的订单数（已存在的订单不重复写入）
+     */
+    @Override
+    @Transactional
+    public int saveSeckillOrders(List<VoucherOrder> voucherOrders) {
+        //1.过滤已存在的订单（消息重复投递）
+        Set<Long> existing = listByIds(voucherOrders.stream().map(VoucherOrder::getId).toList())
+                .stream().map(VoucherOrder::getId).collect(Collectors.toSet());
+        List<VoucherOrder> orders = voucherOrders.stream()
+                .filter(order -> !existing.contains(order.getId()))
+                .collect(Collectors.toMap(VoucherOrder::getId, order -> order, (a, b) -> a, LinkedHashMap::new))
+                .values().stream().toList();
+        if (orders.isEmpty()) {
+            return 0;
+        }
+
+        //2.按优惠券合并扣减库存 set stock = stock - k where voucher_id = ? and stock >= k
+        //按优惠券id顺序更新，并发的批次加行锁的顺序一致，不会互相死锁
+        Map<Long, Long> counts = orders.stream()
+                .collect(Collectors.groupingBy(VoucherOrder::getVoucherId, TreeMap::new, Collectors.counting()));
+        counts.forEach((voucherId, count) -> {
+            boolean success = seckillVoucherService.update()
+                    .setSql("stock = stock - " + count)
+                    .eq("voucher_id", voucherId)
+                    .ge("stock", count)
+                    .update();
+            if (!success) {
+                throw new IllegalStateException("优惠券" + voucherId + "数据库库存不足");
+            }
+        });
+
+        //3.一条多行INSERT写入订单
+        getBaseMapper().insertBatch(orders);
+        return orders.size();
+    }
+
+    /**
+     * 秒杀优惠券（数据库模式：加锁判断一人一单、数据库扣减库存）
+     * 秒杀时间已经在本地判断过，库存不足由扣减库存的SQL判断
+     *
+     * @param voucherId
+     * @return
+     */
+    private Result seckillVoucherWithLock(Long voucherId) {
         //使用悲观锁来实现一人一单功能
         Long userId = UserHolder.getUser().getId();
         SimpleRedisLock lock = new SimpleRedisLock(stringRedisTemplate, "order:" + userId);
@@ -111,7 +258,9 @@ public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, Vou
                 .gt("stock", 0)//where id = #{voucherId} and stock > 0
                 .update();
         if (!success) {
-            return Result.fail("系统繁忙，请稍后重试...");
+            //库存已经扣完，通知所有节点已售罄
+            seckillVoucherCache.markSoldOut(voucherId);
+            return Result.fail("库存不足!");
         }
 
         //6.创建订单
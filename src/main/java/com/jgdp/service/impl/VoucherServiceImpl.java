@@ -1,13 +1,19 @@
 package com.jgdp.service.impl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.jgdp.annotation.CacheStrategy;
+import com.jgdp.annotation.Cached;
 import com.jgdp.dto.Result;
 import com.jgdp.entity.SeckillVoucher;
 import com.jgdp.entity.Voucher;
 import com.jgdp.mapper.VoucherMapper;
 import com.jgdp.service.ISeckillVoucherService;
 import com.jgdp.service.IVoucherService;
+import com.jgdp.utils.CacheInvalidator;
+import com.jgdp.utils.RedisConstants;
+import com.jgdp.utils.SeckillStockManager;
 import jakarta.annotation.Resource;
+import org.springframework.aop.framework.AopContext;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import java.util.List;
@@ -25,15 +31,28 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
 
     @Resource
     private ISeckillVoucherService seckillVoucherService;
+    @Resource
+    private CacheInvalidator cacheInvalidator;
+    @Resource
+    private SeckillStockManager seckillStockManager;
 
     @Override
     public Result queryVoucherOfShop(Long shopId) {
-        // 查询优惠券信息
-        List<Voucher> vouchers = getBaseMapper().queryVoucherOfShop(shopId);
+        // 查询优惠券信息（通过代理对象调用，缓存切面才会生效）
+        IVoucherService proxy = (IVoucherService) AopContext.currentProxy();
+        List<Voucher> vouchers = proxy.listVoucherOfShop(shopId);
         // 返回结果
         return Result.ok(vouchers);
     }
 
+    @Override
+    @Cached(name = "shop-voucher", keyPrefix = RedisConstants.CACHE_SHOP_VOUCHER_KEY,
+            strategy = CacheStrategy.PASS_THROUGH, ttl = RedisConstants.CACHE_SHOP_VOUCHER_TTL,
+            elementType = Voucher.class)
+    public List<Voucher> listVoucherOfShop(Long shopId) {
+        return getBaseMapper().queryVoucherOfShop(shopId);
+    }
+
     @Override
     @Transactional
     public void addSeckillVoucher(Voucher voucher) {
@@ -46,5 +65,9 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
         seckillVoucher.setBeginTime(voucher.getBeginTime());
         seckillVoucher.setEndTime(voucher.getEndTime());
         seckillVoucherService.save(seckillVoucher);
+        // 事务提交后把库存和秒杀时间写入redis
+        seckillStockManager.seed(seckillVoucher);
+        // 事务提交后删除店铺的优惠券列表缓存
+        cacheInvalidator.invalidate(RedisConstants.CACHE_SHOP_VOUCHER_KEY + voucher.getShopId());
     }
 }
@@ -0,0 +1,99 @@
+package com.jgdp.utils;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 紧凑的二进制编解码（Jackson Smile）
+ * 格式：1字节魔数 + 1字节标志位 + 8字节逻辑过期时间（毫秒时间戳，0表示没有逻辑过期） + Smile数据
+ * 逻辑过期时间放在固定位置的头部，判断是否过期时不需要先解析整个对象；
+ * 不是以魔数开头的数据（例如旧的JSON字符串）交给兜底的编解码器处理
+ */
+public class BinaryCacheCodec implements CacheCodec {
+
+    //魔数（不会是JSON的首字节）
+    static final byte MAGIC = (byte) 0xB1;
+    //头部长度
+    static final int HEADER_LENGTH = 10;
+
+    private final ObjectMapper mapper = new ObjectMapper(new SmileFactory())
+            .registerModule(new JavaTimeModule())
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    //兜底的编解码器
+    private final CacheCodec fallback;
+
+    public BinaryCacheCodec(CacheCodec fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return write(value, 0L);
+    }
+
+    @Override
+    public <R> R decode(byte[] bytes, Class<R> type) {
+        if (!isBinary(bytes)) {
+            return fallback.decode(bytes, type);
+        }
+        return read(bytes, type);
+    }
+
+    @Override
+    public byte[] encodeWithExpire(Object value, LocalDateTime expireTime) {
+        return write(value, expireTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+    }
+
+    @Override
+    public RedisData decodeWithExpire(byte[] bytes, Class<?> type) {
+        if (!isBinary(bytes)) {
+            return fallback.decodeWithExpire(bytes, type);
+        }
+        RedisData redisData = new RedisData();
+        //0表示没有逻辑过期时间
+        long expireAt = ByteBuffer.wrap(bytes, 2, 8).getLong();
+        if (expireAt != 0) {
+            redisData.setExpireTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(expireAt), ZoneId.systemDefault()));
+        }
+        redisData.setData(read(bytes, type));
+        return redisData;
+    }
+
+    private byte[] write(Object value, long expireAt) {
+        try {
+            byte[] body = mapper.writeValueAsBytes(value);
+            return ByteBuffer.allocate(HEADER_LENGTH + body.length)
+                    .put(MAGIC)
+                    .put((byte) 0)
+                    .putLong(expireAt)
+                    .put(body)
+                    .array();
+        } catch (IOException e) {
+            throw new RuntimeException("缓存数据编码失败", e);
+        }
+    }
+
+    private <R> R read(byte[] bytes, Class<R> type) {
+        try {
+            return mapper.readValue(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH, type);
+        } catch (IOException e) {
+            throw new RuntimeException("缓存数据解码失败", e);
+        }
+    }
+
+    private static boolean isBinary(byte[] bytes) {
+        return bytes.length >= HEADER_LENGTH && bytes[0] == MAGIC;
+    }
+}
@@ -0,0 +1,136 @@
+package com.jgdp.utils;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+
+import java.util.BitSet;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 基于BitSet的布隆过滤器
+ * 判断不存在则一定不存在，判断存在则有一定的误判率
+ */
+public class BloomFilter {
+
+    //位数组长度
+    private final int numBits;
+    //哈希函数个数
+    private final int numHashes;
+    //创建时即按numBits分配好空间，之后不会扩容，读操作无需加锁
+    private final BitSet bits;
+    //已写入的元素个数（用于估算误判率）
+    private volatile long insertions;
+
+    /**
+     * @param expectedInsertions 预计写入的元素个数
+     * @param fpp                期望的误判率
+     */
+    public BloomFilter(long expectedInsertions, double fpp) {
+        long n = Math.max(expectedInsertions, 1);
+        //m = -n * ln(p) / (ln2)^2
+        long m = (long) (-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        this.numBits = (int) Math.max(64, Math.min(m, Integer.MAX_VALUE - 7));
+        //k = m / n * ln2
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / n * Math.log(2)));
+        this.bits = new BitSet(numBits);
+    }
+
+    /**
+     * 计算元素在位数组中对应的下标（双重哈希）
+     *
+     * @param value
+     * @return
+     */
+    public int[] indexes(String value) {
+        long hash64 = MurmurHash.hash64(value);
+        int hash1 = (int) hash64;
+        int hash2 = (int) (hash64 >>> 32);
+        int[] indexes = new int[numHashes];
+        for (int i = 1; i <= numHashes; i++) {
+            int combined = hash1 + i * hash2;
+            if (combined < 0) {
+                combined = ~combined;
+            }
+            indexes[i - 1] = combined % numBits;
+        }
+        return indexes;
+    }
+
+    /**
+     * 写入元素
+     *
+     * @param value
+     */
+    public void put(String value) {
+        int[] indexes = indexes(value);
+        synchronized (bits) {
+            for (int index : indexes) {
+                bits.set(index);
+            }
+            insertions++;
+        }
+    }
+
+    /**
+     * 判断元素是否可能存在
+     *
+     * @param value
+     * @return false表示一定不存在
+     */
+    public boolean mightContain(String value) {
+        for (int index : indexes(value)) {
+            if (!bits.get(index)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 按当前写入量估算的误判率 (1 - e^(-kn/m))^k
+     *
+     * @return
+     */
+    public double expectedFpp() {
+        return Math.pow(1 - Math.exp(-(double) numHashes * insertions / numBits), numHashes);
+    }
+
+    /**
+     * 转成Redis bitmap的字节格式（Redis中偏移量0对应第一个字节的最高位，与BitSet相反）
+     *
+     * @return
+     */
+    public byte[] toRedisBytes() {
+        byte[] bytes = new byte[(numBits + 7) / 8];
+        byte[] raw;
+        synchronized (bits) {
+            raw = bits.toByteArray();
+        }
+        for (int i = 0; i < raw.length; i++) {
+            bytes[i] = (byte) (Integer.reverse(raw[i] & 0xff) >>> 24);
+        }
+        return bytes;
+    }
+
+    /**
+     * 从Redis bitmap的字节中恢复，写入个数按置位的比例估算 n = -m/k * ln(1 - X/m)
+     *
+     * @param bytes
+     */
+    public void loadRedisBytes(byte[] bytes) {
+        byte[] raw = new byte[Math.min(bytes.length, (numBits + 7) / 8)];
+        for (int i = 0; i < raw.length; i++) {
+            raw[i] = (byte) (Integer.reverse(bytes[i] & 0xff) >>> 24);
+        }
+        synchronized (bits) {
+            bits.clear();
+            bits.or(BitSet.valueOf(raw));
+            double ratio = Math.min((double) bits.cardinality() / numBits, 0.999999);
+            insertions = Math.round(-(double) numBits / numHashes * Math.log(1 - ratio));
+        }
+    }
+
+    public long getInsertions() {
+        return insertions;
+    }
+}
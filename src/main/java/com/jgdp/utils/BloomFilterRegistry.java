@@ -0,0 +1,207 @@
+package com.jgdp.utils;
+
+import com.jgdp.config.CacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 按key前缀管理布隆过滤器，用于在访问redis和数据库之前拦截一定不存在的id（缓存穿透）
+ * 过滤器在本地内存中判断，同时镜像一份到redis的bitmap中（bloom:前缀），
+ * 新增数据时通过发布订阅通知所有节点更新本地过滤器
+ */
+@Slf4j
+@Component
+public class BloomFilterRegistry {
+
+    @Autowired
+    private CacheProperties cacheProperties;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    //key前缀 -> 配置
+    private final Map<String, CacheProperties.BloomSpec> specs = new ConcurrentHashMap<>();
+    //key前缀 -> 已构建完成的过滤器（未构建完成前不做拦截）
+    private final Map<String, BloomFilter> filters = new ConcurrentHashMap<>();
+    //key前缀 -> 正在重建的过滤器（重建期间新增的数据也要写入）
+    private final Map<String, BloomFilter> building = new ConcurrentHashMap<>();
+    private final Map<String, Counter> rejectCounters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> rebuildTimers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        CacheProperties.Bloom bloom = cacheProperties.getBloom();
+        if (!bloom.isEnabled()) {
+            return;
+        }
+        for (CacheProperties.BloomSpec spec : bloom.getSpecs()) {
+            String prefix = spec.getPrefix();
+            specs.put(prefix, spec);
+            //注册监控指标：当前估算的误判率、被拦截的次数、重建耗时
+            Gauge.builder("cache.bloom.fpp", filters, f -> f.containsKey(prefix) ? f.get(prefix).expectedFpp() : Double.NaN)
+                    .tag("prefix", prefix)
+                    .register(meterRegistry);
+            rejectCounters.put(prefix, Counter.builder("cache.bloom.rejected").tag("prefix", prefix).register(meterRegistry));
+            rebuildTimers.put(prefix, Timer.builder("cache.bloom.rebuild").tag("prefix", prefix).register(meterRegistry));
+        }
+        //订阅其他节点新增数据的消息
+        listenerContainer.addMessageListener((message, pattern) ->
+                        addLocal(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(RedisConstants.CACHE_BLOOM_ADD_CHANNEL));
+    }
+
+    /**
+     * 判断该前缀是否配置了布隆过滤器
+     *
+     * @param keyPrefix
+     * @return
+     */
+    public boolean isEnabled(String keyPrefix) {
+        return specs.containsKey(keyPrefix);
+    }
+
+    /**
+     * 判断id是否可能存在
+     *
+     * @param keyPrefix
+     * @param id
+     * @return false表示一定不存在；未配置或者尚未构建完成时总是返回true
+     */
+    public boolean mightContain(String keyPrefix, Object id) {
+        BloomFilter filter = filters.get(keyPrefix);
+        if (filter == null || filter.mightContain(keyPrefix + id)) {
+            return true;
+        }
+        rejectCounters.get(keyPrefix).increment();
+        return false;
+    }
+
+    /**
+     * 新增数据时写入过滤器（本地、redis镜像、其他节点）
+     *
+     * @param keyPrefix
+     * @param id
+     */
+    public void put(String keyPrefix, Object id) {
+        if (!specs.containsKey(keyPrefix)) {
+            return;
+        }
+        String key = keyPrefix + id;
+        //1.写入本地过滤器
+        addLocal(key);
+        //2.写入redis镜像
+        BloomFilter filter = filters.get(keyPrefix);
+        if (filter != null) {
+            byte[] bitmapKey = bitmapKey(keyPrefix);
+            int[] indexes = filter.indexes(key);
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (int index : indexes) {
+                    connection.stringCommands().setBit(bitmapKey, index, true);
+                }
+                return null;
+            });
+        }
+        //3.通知其他节点
+        stringRedisTemplate.convertAndSend(RedisConstants.CACHE_BLOOM_ADD_CHANNEL, key);
+    }
+
+    /**
+     * 全量重建过滤器，重建完成后替换旧的过滤器并覆盖redis镜像
+     * 从数据库重建失败时尝试从redis镜像恢复
+     *
+     * @param keyPrefix
+     * @param scanner   遍历所有id的方法，参数为接收id的回调
+     * @param <ID>
+     */
+    public <ID> void rebuild(String keyPrefix, Consumer<Consumer<ID>> scanner) {
+        CacheProperties.BloomSpec spec = specs.get(keyPrefix);
+        if (spec == null) {
+            return;
+        }
+        BloomFilter filter = new BloomFilter(spec.getExpectedInsertions(), spec.getFpp());
+        building.put(keyPrefix, filter);
+        long begin = System.nanoTime();
+        try {
+            //1.遍历数据库中的所有id写入新的过滤器
+            scanner.accept(id -> filter.put(keyPrefix + id));
+            //2.替换旧的过滤器
+            filters.put(keyPrefix, filter);
+            //3.覆盖redis镜像
+            byte[] bytes = filter.toRedisBytes();
+            stringRedisTemplate.execute((RedisCallback<Object>) connection ->
+                    connection.stringCommands().set(bitmapKey(keyPrefix), bytes));
+            long cost = System.nanoTime() - begin;
+            rebuildTimers.get(keyPrefix).record(cost, TimeUnit.NANOSECONDS);
+            log.info("布隆过滤器重建完成, 前缀:{}, 数量:{}, 估算误判率:{}, 耗时:{}ms",
+                    keyPrefix, filter.getInsertions(), filter.expectedFpp(), TimeUnit.NANOSECONDS.toMillis(cost));
+        } catch (Exception e) {
+            log.error("布隆过滤器重建失败, 尝试从redis恢复, 前缀:{}", keyPrefix, e);
+            loadFromRedis(keyPrefix, spec);
+        } finally {
+            building.remove(keyPrefix, filter);
+        }
+    }
+
+    /**
+     * 从redis镜像恢复过滤器
+     *
+     * @param keyPrefix
+     * @param spec
+     */
+    private void loadFromRedis(String keyPrefix, CacheProperties.BloomSpec spec) {
+        byte[] bytes = stringRedisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.stringCommands().get(bitmapKey(keyPrefix)));
+        if (bytes == null) {
+            log.warn("redis中没有布隆过滤器镜像, 前缀:{}不做拦截", keyPrefix);
+            return;
+        }
+        BloomFilter filter = new BloomFilter(spec.getExpectedInsertions(), spec.getFpp());
+        filter.loadRedisBytes(bytes);
+        filters.put(keyPrefix, filter);
+    }
+
+    /**
+     * 写入本地过滤器（包括正在重建的过滤器）
+     *
+     * @param key 完整的缓存key
+     */
+    private void addLocal(String key) {
+        specs.keySet().forEach(prefix -> {
+            if (!key.startsWith(prefix)) {
+                return;
+            }
+            BloomFilter filter = filters.get(prefix);
+            if (filter != null && !filter.mightContain(key)) {
+                filter.put(key);
+            }
+            BloomFilter rebuilding = building.get(prefix);
+            if (rebuilding != null) {
+                rebuilding.put(key);
+            }
+        });
+    }
+
+    private static byte[] bitmapKey(String keyPrefix) {
+        return (RedisConstants.BLOOM_FILTER_KEY + keyPrefix).getBytes(StandardCharsets.UTF_8);
+    }
+}
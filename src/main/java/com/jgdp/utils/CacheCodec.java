@@ -0,0 +1,48 @@
+package com.jgdp.utils;
+
+import java.time.LocalDateTime;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 缓存值的编解码接口
+ * 缓存中的空值（防缓存穿透）统一用长度为0的字节数组表示，不经过编解码器
+ */
+public interface CacheCodec {
+
+    /**
+     * 编码
+     *
+     * @param value
+     * @return
+     */
+    byte[] encode(Object value);
+
+    /**
+     * 解码（带逻辑过期时间的值也可以按普通值读取，此时忽略逻辑过期时间）
+     *
+     * @param bytes
+     * @param type  目标类型
+     * @param <R>
+     * @return
+     */
+    <R> R decode(byte[] bytes, Class<R> type);
+
+    /**
+     * 编码带逻辑过期时间的值
+     *
+     * @param value
+     * @param expireTime 逻辑过期时间
+     * @return
+     */
+    byte[] encodeWithExpire(Object value, LocalDateTime expireTime);
+
+    /**
+     * 解码带逻辑过期时间的值
+     *
+     * @param bytes
+     * @param type  data的目标类型
+     * @return data已经转成目标类型的RedisData
+     */
+    RedisData decodeWithExpire(byte[] bytes, Class<?> type);
+}
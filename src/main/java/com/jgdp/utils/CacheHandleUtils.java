@@ -1,17 +1,32 @@
 package com.jgdp.utils;
 
+import cn.hutool.core.lang.UUID;
 import cn.hutool.core.util.BooleanUtil;
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONObject;
-import cn.hutool.json.JSONUtil;
+import com.jgdp.config.CacheProperties;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
@@ -23,13 +38,58 @@ import java.util.function.Function;
 @Component
 public class CacheHandleUtils {
 
+    //缓存中的空值（防缓存穿透）
+    private static final byte[] NULL_VALUE = new byte[0];
+    //查询缓存或获取重建锁
+    private static final DefaultRedisScript<List<Object>> GET_OR_LOCK_SCRIPT;
+    //写入缓存并释放重建锁
+    private static final DefaultRedisScript<Long> SET_UNLOCK_SCRIPT;
+    //释放重建锁
+    private static final DefaultRedisScript<Long> UNLOCK_SCRIPT;
+    static {
+        GET_OR_LOCK_SCRIPT = new DefaultRedisScript<>();
+        GET_OR_LOCK_SCRIPT.setLocation(new ClassPathResource("cache_get_or_lock.lua"));
+        //List.class只能表示原始类型，转换为List<Object>作为脚本的返回值类型
+        @SuppressWarnings("unchecked")
+        Class<List<Object>> listType = (Class<List<Object>>) (Class<?>) List.class;
+        GET_OR_LOCK_SCRIPT.setResultType(listType);
+        SET_UNLOCK_SCRIPT = new DefaultRedisScript<>();
+        SET_UNLOCK_SCRIPT.setLocation(new ClassPathResource("cache_set_unlock.lua"));
+        SET_UNLOCK_SCRIPT.setResultType(Long.class);
+        UNLOCK_SCRIPT = new DefaultRedisScript<>();
+        UNLOCK_SCRIPT.setLocation(new ClassPathResource("unlock.lua"));
+        UNLOCK_SCRIPT.setResultType(Long.class);
+    }
+
     @Autowired
     private StringRedisTemplate stringRedisTemplate;
-    //创建线程池
-    private static final ExecutorService CACHE_REBUILD_EXECUTOR = Executors.newFixedThreadPool(10);
+    @Autowired
+    private RedisTemplate<String, byte[]> cacheRedisTemplate;
+    @Autowired
+    private CacheCodec codec;
+    @Autowired
+    private NearCache nearCache;
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+    @Autowired
+    private CacheSingleFlight singleFlight;
+    @Autowired
+    private BloomFilterRegistry bloomFilters;
+    @Autowired
+    private CacheRefresher cacheRefresher;
+    @Autowired
+    private CacheTtlPolicy ttlPolicy;
+    @Autowired
+    private HotKeyDetector hotKeyDetector;
+    @Autowired
+    private CacheProperties cacheProperties;
+    @Autowired
+    private CacheMetrics metrics;
+    @Autowired
+    private ClientSideCache clientSideCache;
 
     /**
-     * 把Java对象转成JSON字符串存入设有超时时间的String类型的key中
+     * 把Java对象编码后存入设有超时时间的String类型的key中
      *
      * @param key
      * @param value
@@ -37,12 +97,24 @@ public class CacheHandleUtils {
      * @param timeUnit   时间单位
      */
     public void set(String key, Object value, Long expireTime, TimeUnit timeUnit) {
-        //1.写入缓存
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(value), expireTime, timeUnit);
+        //1.计算带随机抖动的过期时间
+        long ttl = ttlPolicy.ttlSeconds(key, expireTime, timeUnit);
+        //2.写入缓存
+        cacheRedisTemplate.opsForValue().set(key, codec.encode(value), ttl, TimeUnit.SECONDS);
     }
 
     /**
-     * 把Java对象转成JSON字符串存入设有超时时间的String类型的key中（逻辑过期专用）
+     * 缓存空值，防止缓存穿透
+     *
+     * @param key
+     * @param timeUnit
+     */
+    private void setNull(String key, TimeUnit timeUnit) {
+        cacheRedisTemplate.opsForValue().set(key, NULL_VALUE, RedisConstants.CACHE_NULL_TTL, timeUnit);
+    }
+
+    /**
+     * 把Java对象连同逻辑过期时间编码后存入String类型的key中（逻辑过期专用）
      *
      * @param key
      * @param data
@@ -50,12 +122,40 @@ public class CacheHandleUtils {
      * @param timeUnit
      */
     public void setWithLogicalExpire(String key, Object data, Long expireTime, TimeUnit timeUnit) {
-        //1.设置RedisData对象
-        RedisData redisData = new RedisData();
-        redisData.setData(data);
-        redisData.setExpireTime(LocalDateTime.now().plusSeconds(timeUnit.toSeconds(expireTime)));
+        //1.计算逻辑过期时间（带随机抖动）
+        LocalDateTime logicalExpireTime = LocalDateTime.now().plusSeconds(ttlPolicy.ttlSeconds(key, expireTime, timeUnit));
         //2.写入缓存
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(redisData));
+        cacheRedisTemplate.opsForValue().set(key, codec.encodeWithExpire(data, logicalExpireTime));
+    }
+
+    /**
+     * 把Java对象连同过期时间编码后存入redis，redis中的实际过期时间再延长一个宽限期（stale-while-revalidate专用）
+     * 超过编码中的过期时间后数据视为旧数据，宽限期内仍可在重建期间返回
+     *
+     * @param key
+     * @param value
+     * @param expireTime
+     * @param timeUnit
+     * @param grace      宽限期
+     */
+    public void setWithGrace(String key, Object value, Long expireTime, TimeUnit timeUnit, Duration grace) {
+        //1.计算带随机抖动的过期时间
+        long ttl = ttlPolicy.ttlSeconds(key, expireTime, timeUnit);
+        //2.写入缓存，redis中的过期时间 = 过期时间 + 宽限期
+        byte[] bytes = codec.encodeWithExpire(value, LocalDateTime.now().plusSeconds(ttl));
+        cacheRedisTemplate.opsForValue().set(key, bytes, ttl + grace.getSeconds(), TimeUnit.SECONDS);
+    }
+
+    /**
+     * 删除缓存，同时清理所有节点的本地缓存
+     *
+     * @param key
+     */
+    public void delete(String key) {
+        //1.删除redis缓存
+        cacheRedisTemplate.delete(key);
+        //2.广播失效消息，清理本地缓存
+        invalidationBus.publish(key);
     }
 
     /**
@@ -101,39 +201,188 @@ public class CacheHandleUtils {
             String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback,
             Long expireTime, TimeUnit timeUnit) {
 
-        //1.从redis中查询商铺缓存
+        //0.布隆过滤器判断id一定不存在的，直接返回，不再访问redis和数据库
+        if (!bloomFilters.mightContain(keyPrefix, id)) {
+            return null;
+        }
+
+        //1.先查本地缓存
         String key = keyPrefix + id;
-        String json = stringRedisTemplate.opsForValue().get(key);
+        R local = getLocal(keyPrefix, key, type);
+        if (local != null) {
+            metrics.hit(keyPrefix, CacheMetrics.PASS_THROUGH);
+            return local;
+        }
+
+        //从redis中查询商铺缓存
+        byte[] bytes = getBytes(keyPrefix, key);
 
         //2.判断是否存在
-        if (StrUtil.isNotBlank(json)) {
-            //3.存在，直接返回
-            return JSONUtil.toBean(json, type);
+        if (bytes != null && bytes.length > 0) {
+            //3.存在，写入本地缓存后返回
+            metrics.hit(keyPrefix, CacheMetrics.PASS_THROUGH);
+            R r = codec.decode(bytes, type);
+            putLocal(keyPrefix, key, r);
+            return r;
         }
-        // 判断是否为空值（JSON字符串为空且不等于null就说明命中了空字符串""）
-        if (json != null) {
+        // 判断是否为空值（不等于null就说明命中了空值）
+        if (bytes != null) {
             //是空字符串就直接返回错误信息
+            metrics.nullHit(keyPrefix, CacheMetrics.PASS_THROUGH);
             return null;
         }
 
         //4.不存在，查询数据库
-        R r = dbFallback.apply(id);
+        metrics.miss(keyPrefix, CacheMetrics.PASS_THROUGH);
+        R r = metrics.recordRebuild(keyPrefix, CacheMetrics.PASS_THROUGH, () -> dbFallback.apply(id));
 
         //5.判断是否存在
         if (r == null) {
             //6.如果数据库中也不存在，则需要做防缓存穿透处理
-            // 缓存空值（空字符串），设置空值过期时间，然后返回错误信息
-            this.set(key, "", RedisConstants.CACHE_NULL_TTL, timeUnit);
+            // 缓存空值，设置空值过期时间，然后返回错误信息
+            this.setNull(key, timeUnit);
             return null;
         }
 
         //7.存在，将商铺数据写入redis，使用超时剔除策略
         this.set(key, r, expireTime, timeUnit);
+        putLocal(keyPrefix, key, r);
 
         //8.返回
         return r;
     }
 
+    /**
+     * 批量查询（缓存穿透）
+     * 一次MGET查询redis，未命中的id一次IN查询数据库，再通过管道批量回写redis，
+     * 无论多少个id都只有固定的三次往返
+     *
+     * @param keyPrefix  key前缀
+     * @param ids
+     * @param type       返回值类型
+     * @param dbFallback 根据id集合批量查询数据库
+     * @param idGetter   从查询结果中取出id
+     * @param expireTime 过期时间
+     * @param timeUnit   时间单位
+     * @param <ID>       id参数泛型
+     * @param <R>        返回值泛型
+     * @return 与ids顺序一一对应的结果，不存在的位置为null
+     */
+    public <ID, R> List<R> queryBatch(
+            String keyPrefix, Collection<ID> ids, Class<R> type, Function<Collection<ID>, List<R>> dbFallback,
+            Function<R, ID> idGetter, Long expireTime, TimeUnit timeUnit) {
+
+        //1.去重，查本地缓存，过滤掉布隆过滤器判断一定不存在的id
+        Map<String, R> found = new HashMap<>();
+        List<ID> remoteIds = new ArrayList<>();
+        for (ID id : new LinkedHashSet<>(ids)) {
+            String key = keyPrefix + id;
+            if (!bloomFilters.mightContain(keyPrefix, id)) {
+                continue;
+            }
+            R local = getLocal(keyPrefix, key, type);
+            if (local != null) {
+                metrics.hit(keyPrefix, CacheMetrics.BATCH);
+                found.put(key, local);
+            } else {
+                remoteIds.add(id);
+            }
+        }
+
+        //2.一次MGET查询redis
+        List<ID> missIds = new ArrayList<>();
+        if (!remoteIds.isEmpty()) {
+            List<String> keys = remoteIds.stream().map(id -> keyPrefix + id).toList();
+            List<byte[]> values = cacheRedisTemplate.opsForValue().multiGet(keys);
+            for (int i = 0; i < keys.size(); i++) {
+                byte[] bytes = values == null ? null : values.get(i);
+                if (bytes == null) {
+                    metrics.miss(keyPrefix, CacheMetrics.BATCH);
+                    missIds.add(remoteIds.get(i));
+                } else if (bytes.length > 0) {
+                    metrics.hit(keyPrefix, CacheMetrics.BATCH);
+                    R r = codec.decode(bytes, type);
+                    putLocal(keyPrefix, keys.get(i), r);
+                    found.put(keys.get(i), r);
+                } else {
+                    //空值说明数据库中也不存在，直接跳过
+                    metrics.nullHit(keyPrefix, CacheMetrics.BATCH);
+                }
+            }
+        }
+
+        //3.未命中的id一次查询数据库，再通过管道批量回写redis（不存在的id缓存空值）
+        if (!missIds.isEmpty()) {
+            Map<String, byte[]> toWrite = new LinkedHashMap<>();
+            for (R r : metrics.recordRebuild(keyPrefix, CacheMetrics.BATCH, () -> dbFallback.apply(missIds))) {
+                String key = keyPrefix + idGetter.apply(r);
+                found.put(key, r);
+                putLocal(keyPrefix, key, r);
+                toWrite.put(key, codec.encode(r));
+            }
+            missIds.forEach(id -> toWrite.putIfAbsent(keyPrefix + id, NULL_VALUE));
+            cacheRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                toWrite.forEach((key, bytes) -> connection.stringCommands().set(
+                        RedisSerializer.string().serialize(key), bytes,
+                        bytes.length == 0
+                                ? Expiration.from(RedisConstants.CACHE_NULL_TTL, timeUnit)
+                                : Expiration.seconds(ttlPolicy.ttlSeconds(key, expireTime, timeUnit)),
+                        RedisStringCommands.SetOption.upsert()));
+                return null;
+            });
+        }
+
+        //4.按传入的顺序返回
+        List<R> result = new ArrayList<>(ids.size());
+        for (ID id : ids) {
+            result.add(found.get(keyPrefix + id));
+        }
+        return result;
+    }
+
+    /**
+     * 响应级缓存：缓存序列化好的响应内容，命中时直接返回字节，不再经过反序列化和序列化
+     * 防穿透、防击穿由loader内部的对象缓存负责，这里只缓存loader返回的非null结果
+     *
+     * @param keyPrefix  key前缀
+     * @param id
+     * @param loader     生成响应内容，返回null表示结果不需要缓存
+     * @param expireTime 过期时间
+     * @param timeUnit   时间单位
+     * @param <ID>       id参数泛型
+     * @return 响应内容，loader返回null时返回null
+     */
+    public <ID> byte[] queryResponse(
+            String keyPrefix, ID id, Function<ID, byte[]> loader, Long expireTime, TimeUnit timeUnit) {
+
+        String key = keyPrefix + id;
+
+        //1.先查本地缓存
+        byte[] local = getLocal(keyPrefix, key, byte[].class);
+        if (local != null) {
+            metrics.hit(keyPrefix, CacheMetrics.RESPONSE);
+            return local;
+        }
+
+        //2.查询redis，存在则直接返回
+        byte[] bytes = getBytes(keyPrefix, key);
+        if (bytes != null && bytes.length > 0) {
+            metrics.hit(keyPrefix, CacheMetrics.RESPONSE);
+            putLocal(keyPrefix, key, bytes);
+            return bytes;
+        }
+
+        //3.不存在，生成响应内容并原样写入redis（不经过编解码器）
+        metrics.miss(keyPrefix, CacheMetrics.RESPONSE);
+        byte[] body = metrics.recordRebuild(keyPrefix, CacheMetrics.RESPONSE, () -> loader.apply(id));
+        if (body != null) {
+            long ttl = ttlPolicy.ttlSeconds(key, expireTime, timeUnit);
+            cacheRedisTemplate.opsForValue().set(key, body, ttl, TimeUnit.SECONDS);
+            putLocal(keyPrefix, key, body);
+        }
+        return body;
+    }
+
     /**
      * 缓存击穿（逻辑过期）
      *
@@ -151,114 +400,534 @@ public class CacheHandleUtils {
             String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback,
             Long expireTime, TimeUnit timeUnit) {
 
-        String key = RedisConstants.CACHE_SHOP_KEY + id;
-        String lockKey = RedisConstants.LOCK_SHOP_KEY;
+        //0.布隆过滤器判断id一定不存在的，直接返回，不再访问redis和数据库
+        if (!bloomFilters.mightContain(keyPrefix, id)) {
+            return null;
+        }
 
-        //1.从redis中查询商铺缓存
-        String json = stringRedisTemplate.opsForValue().get(key);
+        String key = keyPrefix + id;
 
-        //2.判断是否存在
-        if (StrUtil.isBlank(json)) {
-            //3.不存在，返回错误信息
+        //1.先查本地缓存（本地缓存的存活时间很短，过期交给redis中的逻辑过期判断）
+        R local = getLocal(keyPrefix, key, type);
+        if (local != null) {
+            metrics.hit(keyPrefix, CacheMetrics.LOGICAL_EXPIRE);
+            return local;
+        }
+
+        //从redis中查询商铺缓存
+        byte[] bytes = getBytes(keyPrefix, key);
+
+        //2.命中空值（数据库中不存在），直接返回
+        if (bytes != null && bytes.length == 0) {
+            metrics.nullHit(keyPrefix, CacheMetrics.LOGICAL_EXPIRE);
             return null;
         }
 
+        //3.未预热或已被删除，与互斥锁策略一样重建（同一个key只有一个请求查询数据库，不存在时写入空值）
+        if (bytes == null) {
+            metrics.miss(keyPrefix, CacheMetrics.LOGICAL_EXPIRE);
+            return singleFlight.execute(key,
+                    () -> rebuildWithLock(keyPrefix, key, id, type, dbFallback, expireTime, timeUnit, graceOf(keyPrefix), true));
+        }
+
         //4.存在
-        RedisData redisData = JSONUtil.toBean(json, RedisData.class);
-        R r = JSONUtil.toBean((JSONObject) redisData.getData(), type);
+        metrics.hit(keyPrefix, CacheMetrics.LOGICAL_EXPIRE);
+        RedisData redisData = codec.decodeWithExpire(bytes, type);
         LocalDateTime time = redisData.getExpireTime();
-
-        //5.判断缓存是否过期
-        if (time.isAfter(LocalDateTime.now())) {
-            //6.未过期，直接返回
+        if (time == null || redisData.getData() == null) {
+            //没有逻辑过期时间的值（普通写入的数据），直接返回
+            R r = codec.decode(bytes, type);
+            putLocal(keyPrefix, key, r);
             return r;
         }
-
-        //7.过期，进行缓存重建
-        //7.1.获取互斥锁
-        boolean isLock = tryLock(lockKey);
-
-        //7.2.判断是否获取锁成功
-        if (isLock) {
-            //7.3.获取锁成功，开启独立线程查询数据库
-            CACHE_REBUILD_EXECUTOR.submit(() -> {
-                try {
-                    //重建缓存
-                    // 查询数据库
-                    R r1 = dbFallback.apply(id);
-                    // 写入缓存
-                    this.setWithLogicalExpire(key, r1, expireTime, timeUnit);
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                } finally {
-                    //释放锁
-                    unLock(lockKey);
-                }
-            });
+        R r = type.cast(redisData.getData());
+
+        //5.判断缓存是否过期或者即将过期
+        long remainingMillis = Duration.between(LocalDateTime.now(), time).toMillis();
+        if (remainingMillis > 0) {
+            //6.未过期，写入本地缓存
+            putLocal(keyPrefix, key, r);
+            //6.1.剩余时间不多时提前刷新，让热点key尽量不进入过期状态
+            if (cacheRefresher.shouldRefreshAhead(remainingMillis, timeUnit.toMillis(expireTime))) {
+                submitRefresh(keyPrefix, key, id, dbFallback, expireTime, timeUnit, true);
+            }
+            return r;
         }
 
-        //7.4.获取锁成功或失败，都返回旧的信息
+        //7.过期，提交异步刷新（去重、限流都由刷新组件处理）
+        submitRefresh(keyPrefix, key, id, dbFallback, expireTime, timeUnit, false);
+
+        //8.无论刷新任务是否提交成功，都返回旧的信息
         return r;
     }
 
+    /**
+     * 提交逻辑过期缓存的刷新任务
+     *
+     * @param keyPrefix
+     * @param key
+     * @param id
+     * @param dbFallback
+     * @param expireTime
+     * @param timeUnit
+     * @param proactive  是否是提前刷新
+     * @param <ID>
+     * @param <R>
+     */
+    private <ID, R> void submitRefresh(
+            String keyPrefix, String key, ID id, Function<ID, R> dbFallback,
+            Long expireTime, TimeUnit timeUnit, boolean proactive) {
+        cacheRefresher.submit(key, lockName(key), proactive, () -> {
+            //1.查询数据库
+            R r = metrics.recordRebuild(keyPrefix, CacheMetrics.LOGICAL_EXPIRE, () -> dbFallback.apply(id));
+            if (r == null) {
+                //2.数据已经被删除，删除缓存
+                this.delete(key);
+                return;
+            }
+            //3.写入缓存
+            this.setWithLogicalExpire(key, r, expireTime, timeUnit);
+        });
+    }
+
+    /**
+     * 缓存击穿（互斥锁）
+     * 同一个key在节点内只有一个线程重建，节点间通过 lock:业务:id 的分布式锁互斥，
+     * 未抢到锁的调用方在重建完成时被唤醒，而不是休眠后递归重试
+     *
+     * @param keyPrefix  key前缀
+     * @param id
+     * @param type       返回值类型
+     * @param dbFallback 查询数据库方法
+     * @param expireTime 过期时间
+     * @param timeUnit   时间单位
+     * @param <ID>       id参数泛型
+     * @param <R>        返回值泛型
+     * @return
+     */
     public <ID, R> R queryWithMutex(
             String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback,
             Long expireTime, TimeUnit timeUnit) {
+        return queryWithMutex(keyPrefix, id, type, dbFallback, expireTime, timeUnit, graceOf(keyPrefix));
+    }
+
+    /**
+     * 缓存击穿（互斥锁），指定宽限期时按stale-while-revalidate方式工作
+     * 宽限期只对本次调用生效，同一个前缀下其他策略的调用不受影响
+     *
+     * @param keyPrefix  key前缀
+     * @param id
+     * @param type       返回值类型
+     * @param dbFallback 查询数据库方法
+     * @param expireTime 过期时间
+     * @param timeUnit   时间单位
+     * @param grace      宽限期，null表示没有宽限期
+     * @param <ID>       id参数泛型
+     * @param <R>        返回值泛型
+     * @return
+     */
+    public <ID, R> R queryWithMutex(
+            String keyPrefix, ID id, Class<R> type, Function<ID, R> dbFallback,
+            Long expireTime, TimeUnit timeUnit, Duration grace) {
+
+        //0.布隆过滤器判断id一定不存在的，直接返回，不再访问redis和数据库
+        if (!bloomFilters.mightContain(keyPrefix, id)) {
+            return null;
+        }
 
         String key = keyPrefix + id;
-        String lockKey = RedisConstants.LOCK_SHOP_KEY;
 
-        //1.从redis中查询商铺缓存
-        String json = stringRedisTemplate.opsForValue().get(key);
+        //1.先查本地缓存
+        R local = getLocal(keyPrefix, key, type);
+        if (local != null) {
+            metrics.hit(keyPrefix, CacheMetrics.MUTEX);
+            return local;
+        }
+
+        //从redis中查询缓存，未命中时在同一次往返中获取重建锁（开启客户端缓存的前缀先查本地，未命中再加锁）
+        byte[] bytes;
+        if (clientSideCache.supports(key)) {
+            bytes = getBytes(keyPrefix, key);
+        } else {
+            String token = UUID.fastUUID().toString(true);
+            List<Object> result = metrics.recordGet(keyPrefix, () -> getOrLock(key, token));
+            if (lockStatus(result) == 2) {
+                //4.未命中并且获取锁成功，查询数据库后一次往返写入缓存并释放锁（未命中共两次往返）
+                //  本节点已有线程在重建时释放刚拿到的锁，等待它的结果
+                metrics.miss(keyPrefix, CacheMetrics.MUTEX);
+                return singleFlight.execute(key,
+                        () -> rebuildLocked(keyPrefix, key, token, id, dbFallback, expireTime, timeUnit, grace, false),
+                        () -> releaseLock(key, token));
+            }
+            bytes = lockStatus(result) == 1 ? (byte[]) result.get(1) : null;
+        }
 
         //2.判断是否存在
-        if (StrUtil.isNotBlank(json)) {
-            //3.存在，直接返回
-            R r = JSONUtil.toBean(json, type);
+        if (bytes != null && bytes.length > 0) {
+            metrics.hit(keyPrefix, CacheMetrics.MUTEX);
+            //3.存在，配置了宽限期的前缀需要判断数据是否已过期
+            if (grace != null) {
+                RedisData redisData = codec.decodeWithExpire(bytes, type);
+                if (isStale(redisData)) {
+                    //3.1.已过期，抢到锁的请求重建，其余请求直接返回旧数据
+                    return refreshStale(keyPrefix, key, id, type, type.cast(redisData.getData()), dbFallback, expireTime, timeUnit, grace);
+                }
+                if (redisData.getData() != null) {
+                    R r = type.cast(redisData.getData());
+                    putLocal(keyPrefix, key, r);
+                    return r;
+                }
+            }
+            //3.2.未过期，写入本地缓存后返回
+            R r = codec.decode(bytes, type);
+            putLocal(keyPrefix, key, r);
             return r;
         }
-        // 判断是否为空值（不等于null就说明命中了空字符串""）
-        if (json != null) {
+        // 判断是否为空值（不等于null就说明命中了空值）
+        if (bytes != null) {
             //是空字符串就直接返回错误信息
+            metrics.nullHit(keyPrefix, CacheMetrics.MUTEX);
             return null;
         }
 
-        //4.缓存重建
-        R r = null;
-        try {
-            //4.1.获取互斥锁
-            boolean isLock = tryLock(lockKey);
-
-            //4.2.判断是否获取锁成功
-            if (!isLock) {
-                //4.3.获取锁失败，休眠一段时间，继续尝试获取
-                Thread.sleep(50);
-                return queryWithMutex(keyPrefix, id, type,
-                        dbFallback, expireTime, timeUnit);
+        //4.缓存重建（没有旧数据可用，仍然阻塞等待），同一个key的并发请求共享同一次重建
+        //  其他请求正在重建（获取锁失败）或者开启了客户端缓存时，重新登记等待后再查询或加锁
+        metrics.miss(keyPrefix, CacheMetrics.MUTEX);
+        return singleFlight.execute(key,
+                () -> rebuildWithLock(keyPrefix, key, id, type, dbFallback, expireTime, timeUnit, grace, false));
+    }
+
+    /**
+     * 基于lua脚本重建缓存，重建本身只需要两次往返：
+     * 1.cache_get_or_lock.lua：缓存存在则直接返回，否则尝试获取重建锁
+     * 2.cache_set_unlock.lua：写入缓存、释放锁、广播重建完成
+     * queryWithMutex未命中时第一次查询已经由cache_get_or_lock.lua完成，抢到锁直接调用rebuildLocked，
+     * 只有其他请求正在重建或者前缀开启了客户端缓存时才会走到这里
+     *
+     * @param keyPrefix
+     * @param key
+     * @param id
+     * @param type
+     * @param dbFallback
+     * @param expireTime
+     * @param timeUnit
+     * @param grace         宽限期，null表示没有宽限期
+     * @param logicalExpire 是否按逻辑过期格式写入（逻辑过期策略的未命中重建）
+     * @param <ID>
+     * @param <R>
+     * @return
+     */
+    private <ID, R> R rebuildWithLock(
+            String keyPrefix, String key, ID id, Class<R> type, Function<ID, R> dbFallback,
+            Long expireTime, TimeUnit timeUnit, Duration grace, boolean logicalExpire) {
+        String strategy = logicalExpire ? CacheMetrics.LOGICAL_EXPIRE : CacheMetrics.MUTEX;
+
+        //1.先登记等待，再抢锁，避免抢锁失败后错过其他节点的重建广播
+        CompletableFuture<Void> signal = singleFlight.watch(key);
+        String token = UUID.fastUUID().toString(true);
+        List<Object> result = getOrLock(key, token);
+        long status = lockStatus(result);
+
+        //2.缓存已被其他请求重建（包括空值），直接返回
+        if (status == 1) {
+            singleFlight.unwatch(key, signal);
+            byte[] bytes = (byte[]) result.get(1);
+            R r = bytes.length == 0 ? null : codec.decode(bytes, type);
+            putLocal(keyPrefix, key, r);
+            return r;
+        }
+
+        if (status == 0) {
+            //3.获取锁失败，说明其他节点正在重建，等待其完成后再查redis
+            metrics.lockContention(keyPrefix, strategy);
+            try {
+                if (singleFlight.awaitRemote(key, signal)) {
+                    byte[] bytes = getBytes(keyPrefix, key);
+                    if (bytes != null) {
+                        R r = bytes.length == 0 ? null : codec.decode(bytes, type);
+                        putLocal(keyPrefix, key, r);
+                        return r;
+                    }
+                }
+            } finally {
+                singleFlight.unwatch(key, signal);
             }
+            //4.等待超时或对方重建失败，自己查一次数据库兜底，保证等待时间有上限
+            return loadAndCache(keyPrefix, key, id, dbFallback, expireTime, timeUnit, grace);
+        }
 
-            //4.4.获取锁成功，查询数据库
-            r = dbFallback.apply(id);
+        //5.获取锁成功，查询数据库并写入缓存
+        singleFlight.unwatch(key, signal);
+        return rebuildLocked(keyPrefix, key, token, id, dbFallback, expireTime, timeUnit, grace, logicalExpire);
+    }
 
-            //5.判断是否存在
+    /**
+     * 已经持有重建锁：查询数据库，一次往返写入缓存、释放锁并广播重建完成
+     *
+     * @param keyPrefix
+     * @param key
+     * @param token         锁标识
+     * @param id
+     * @param dbFallback
+     * @param expireTime
+     * @param timeUnit
+     * @param grace         宽限期，null表示没有宽限期
+     * @param logicalExpire 是否按逻辑过期格式写入
+     * @param <ID>
+     * @param <R>
+     * @return
+     */
+    private <ID, R> R rebuildLocked(
+            String keyPrefix, String key, String token, ID id, Function<ID, R> dbFallback,
+            Long expireTime, TimeUnit timeUnit, Duration grace, boolean logicalExpire) {
+        String strategy = logicalExpire ? CacheMetrics.LOGICAL_EXPIRE : CacheMetrics.MUTEX;
+        String lockKey = RedisConstants.KEY_PREFIX + lockName(key);
+        R r;
+        try {
+            r = metrics.recordRebuild(keyPrefix, strategy, () -> dbFallback.apply(id));
+        } catch (RuntimeException e) {
+            //查询失败，释放锁并唤醒等待的节点，让它们自己兜底
+            releaseLock(key, token);
+            throw e;
+        }
+
+        //6.编码（不存在时写入空值），一次往返写入缓存并释放锁
+        byte[] value;
+        long ttl;
+        if (r == null) {
+            value = NULL_VALUE;
+            ttl = timeUnit.toSeconds(RedisConstants.CACHE_NULL_TTL);
+        } else if (grace != null || logicalExpire) {
+            //带逻辑过期时间写入，redis中的过期时间再延长宽限期（未配置宽限期的逻辑过期数据与逻辑过期时间同时过期）
+            ttl = ttlPolicy.ttlSeconds(key, expireTime, timeUnit);
+            value = codec.encodeWithExpire(r, LocalDateTime.now().plusSeconds(ttl));
+            ttl += grace == null ? 0 : grace.getSeconds();
+        } else {
+            ttl = ttlPolicy.ttlSeconds(key, expireTime, timeUnit);
+            value = codec.encode(r);
+        }
+        cacheRedisTemplate.execute(SET_UNLOCK_SCRIPT, List.of(key, lockKey),
+                toArg(token), value, toArg(ttl), toArg(RedisConstants.CACHE_REBUILT_CHANNEL));
+        putLocal(keyPrefix, key, r);
+        return r;
+    }
+
+    /**
+     * 查询缓存，不存在时尝试获取重建锁（cache_get_or_lock.lua）
+     *
+     * @param key
+     * @param token 锁标识
+     * @return {1, 缓存值}：缓存存在（包括空值）；{2}：获取锁成功；{0}：其他请求正在重建
+     */
+    private List<Object> getOrLock(String key, String token) {
+        return cacheRedisTemplate.execute(GET_OR_LOCK_SCRIPT,
+                List.of(key, RedisConstants.KEY_PREFIX + lockName(key)),
+                toArg(token), toArg(RedisConstants.LOCK_SHOP_TTL));
+    }
+
+    private static long lockStatus(List<Object> result) {
+        return result == null || result.isEmpty() ? 0 : (Long) result.get(0);
+    }
+
+    /**
+     * 释放重建锁并唤醒等待的节点（未重建缓存，等待方重新查询或自己兜底）
+     *
+     * @param key
+     * @param token
+     */
+    private void releaseLock(String key, String token) {
+        stringRedisTemplate.execute(UNLOCK_SCRIPT,
+                Collections.singletonList(RedisConstants.KEY_PREFIX + lockName(key)), token);
+        singleFlight.publishRebuilt(key);
+    }
+
+    /**
+     * 重建已过期但仍在宽限期内的缓存
+     * 抢到锁的请求查询数据库并重建，未抢到锁的请求立即返回旧数据，不在过期时刻排队等待
+     *
+     * @param keyPrefix
+     * @param key
+     * @param id
+     * @param type
+     * @param stale      旧数据
+     * @param dbFallback
+     * @param expireTime
+     * @param timeUnit
+     * @param grace      宽限期
+     * @param <ID>
+     * @param <R>
+     * @return
+     */
+    private <ID, R> R refreshStale(
+            String keyPrefix, String key, ID id, Class<R> type, R stale, Function<ID, R> dbFallback,
+            Long expireTime, TimeUnit timeUnit, Duration grace) {
+
+        //1.获取锁，失败说明其他请求正在重建，直接返回旧数据
+        SimpleRedisLock lock = new SimpleRedisLock(stringRedisTemplate, lockName(key));
+        if (!lock.tryLock(RedisConstants.LOCK_SHOP_TTL)) {
+            metrics.lockContention(keyPrefix, CacheMetrics.MUTEX);
+            return stale;
+        }
+        try {
+            //2.获取锁成功，再次检查缓存是否已被重建
+            byte[] bytes = getBytes(keyPrefix, key);
+            if (bytes != null && bytes.length > 0) {
+                RedisData redisData = codec.decodeWithExpire(bytes, type);
+                if (!isStale(redisData) && redisData.getData() != null) {
+                    R r = type.cast(redisData.getData());
+                    putLocal(keyPrefix, key, r);
+                    return r;
+                }
+            }
+            //3.查询数据库并写入缓存
+            R r = metrics.recordRebuild(keyPrefix, CacheMetrics.MUTEX, () -> dbFallback.apply(id));
             if (r == null) {
-                //6.不存在，缓存空值（空字符串），设置空值过期时间，然后返回错误信息
-                this.set(key, "", RedisConstants.CACHE_NULL_TTL, timeUnit);
+                //3.1.数据已经被删除，缓存空值
+                this.setNull(key, timeUnit);
                 return null;
             }
+            this.setWithGrace(key, r, expireTime, timeUnit, grace);
+            putLocal(keyPrefix, key, r);
+            return r;
+        } catch (Exception e) {
+            //4.重建失败（例如数据库异常），宽限期内继续返回旧数据
+            log.error("缓存重建失败, 返回旧数据, key:{}", key, e);
+            return stale;
+        } finally {
+            //5.释放锁，并唤醒等待的节点
+            lock.unlock();
+            singleFlight.publishRebuilt(key);
+        }
+    }
 
-            //7.存在，将商铺数据写入redis，使用超时剔除策略
-            this.set(key, r, expireTime, timeUnit);
+    /**
+     * 查询数据库并写入缓存，不存在时缓存空值
+     *
+     * @param keyPrefix
+     * @param key
+     * @param id
+     * @param dbFallback
+     * @param expireTime
+     * @param timeUnit
+     * @param grace      宽限期，null表示没有宽限期
+     * @param <ID>
+     * @param <R>
+     * @return
+     */
+    private <ID, R> R loadAndCache(
+            String keyPrefix, String key, ID id, Function<ID, R> dbFallback,
+            Long expireTime, TimeUnit timeUnit, Duration grace) {
+        //1.查询数据库
+        R r = metrics.recordRebuild(keyPrefix, CacheMetrics.MUTEX, () -> dbFallback.apply(id));
 
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        } finally {
-            //8.释放锁（无论是否执行成功，都应该释放锁）
-            unLock(lockKey);
+        //2.判断是否存在
+        if (r == null) {
+            //3.不存在，缓存空值，设置空值过期时间
+            this.setNull(key, timeUnit);
+            return null;
         }
 
-        //9.返回
+        //4.存在，将数据写入redis，使用超时剔除策略（有宽限期时额外保留旧数据）
+        if (grace != null) {
+            this.setWithGrace(key, r, expireTime, timeUnit, grace);
+        } else {
+            this.set(key, r, expireTime, timeUnit);
+        }
+        putLocal(keyPrefix, key, r);
         return r;
     }
 
+    /**
+     * 从redis中查询缓存（开启客户端缓存的前缀优先读本地），并记录耗时
+     *
+     * @param keyPrefix
+     * @param key
+     * @return
+     */
+    private byte[] getBytes(String keyPrefix, String key) {
+        if (clientSideCache.supports(key)) {
+            return metrics.recordGet(keyPrefix, () -> clientSideCache.get(key));
+        }
+        return metrics.recordGet(keyPrefix, () -> cacheRedisTemplate.opsForValue().get(key));
+    }
+
+    /**
+     * 查询key前缀配置的宽限期
+     *
+     * @param keyPrefix
+     * @return 未配置时返回null
+     */
+    public Duration graceOf(String keyPrefix) {
+        for (CacheProperties.SwrSpec spec : cacheProperties.getSwr().getSpecs()) {
+            if (keyPrefix.equals(spec.getPrefix())) {
+                return spec.getGrace();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 判断带过期时间的缓存数据是否已过期（没有过期时间的数据视为未过期）
+     *
+     * @param redisData
+     * @return
+     */
+    private boolean isStale(RedisData redisData) {
+        LocalDateTime expireTime = redisData.getExpireTime();
+        return expireTime != null && redisData.getData() != null && expireTime.isBefore(LocalDateTime.now());
+    }
+
+    /**
+     * 记录访问，并依次从热点key副本、本地缓存中读取
+     *
+     * @param keyPrefix
+     * @param key
+     * @param type
+     * @param <R>
+     * @return 本地未命中时返回null
+     */
+    private <R> R getLocal(String keyPrefix, String key, Class<R> type) {
+        ttlPolicy.recordAccess(key);
+        hotKeyDetector.recordAccess(key);
+        R hot = hotKeyDetector.get(key, type);
+        if (hot != null) {
+            return hot;
+        }
+        return nearCache.get(keyPrefix, key, type);
+    }
+
+    /**
+     * 写入本地缓存，热点key同时保存本地副本
+     *
+     * @param keyPrefix
+     * @param key
+     * @param value
+     */
+    private void putLocal(String keyPrefix, String key, Object value) {
+        nearCache.put(keyPrefix, key, value);
+        hotKeyDetector.offer(key, value);
+    }
+
+    /**
+     * 根据缓存key生成分布式锁的名称，例如 cache:shop:1 -> shop:1（最终的锁key为 lock:shop:1）
+     *
+     * @param key
+     * @return
+     */
+    private static String lockName(String key) {
+        return key.startsWith(RedisConstants.CACHE_KEY_PREFIX)
+                ? key.substring(RedisConstants.CACHE_KEY_PREFIX.length())
+                : key;
+    }
+
+    /**
+     * 把lua脚本参数转换为字节数组（缓存专用的RedisTemplate按字节数组序列化脚本参数）
+     *
+     * @param arg
+     * @return
+     */
+    private static byte[] toArg(Object arg) {
+        return String.valueOf(arg).getBytes(StandardCharsets.UTF_8);
+    }
+
 }
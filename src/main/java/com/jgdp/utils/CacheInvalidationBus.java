@@ -0,0 +1,69 @@
+package com.jgdp.utils;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 缓存失效广播
+ * 基于Redis的发布订阅，某个节点删除缓存key后通知所有节点清理各自的本地副本
+ */
+@Slf4j
+@Component
+public class CacheInvalidationBus {
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+    //本地的失效处理器（本地缓存等组件在这里注册）
+    private final List<Consumer<String>> handlers = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String key = new String(message.getBody(), StandardCharsets.UTF_8);
+            handleLocal(key);
+        }, new ChannelTopic(RedisConstants.CACHE_INVALIDATE_CHANNEL));
+    }
+
+    /**
+     * 注册本地失效处理器
+     *
+     * @param handler 入参为失效的缓存key
+     */
+    public void subscribe(Consumer<String> handler) {
+        handlers.add(handler);
+    }
+
+    /**
+     * 广播缓存key失效（本节点会先同步清理，再由订阅消息通知其他节点）
+     *
+     * @param key
+     */
+    public void publish(String key) {
+        handleLocal(key);
+        stringRedisTemplate.convertAndSend(RedisConstants.CACHE_INVALIDATE_CHANNEL, key);
+    }
+
+    private void handleLocal(String key) {
+        for (Consumer<String> handler : handlers) {
+            try {
+                handler.accept(key);
+            } catch (Exception e) {
+                log.error("处理缓存失效消息异常, key:{}", key, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.jgdp.utils;
+
+import com.jgdp.config.CacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 缓存失效
+ * 1.在事务中调用时，等事务提交后再删除缓存，避免提交前被并发的读请求用旧数据回填
+ * 2.可选的延迟双删：提交后删除一次，延迟一段时间再删除一次，清理掉提交前后被读请求回填的旧数据
+ * 3.删除失败的key放入有界的重试队列，定时重试
+ */
+@Slf4j
+@Component
+public class CacheInvalidator {
+
+    @Autowired
+    private CacheHandleUtils cacheHandleUtils;
+    @Autowired
+    private CacheProperties cacheProperties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    private ScheduledExecutorService scheduler;
+    //删除失败待重试的key
+    private BlockingQueue<RetryTask> retryQueue;
+    private Counter failedCounter;
+    private Counter droppedCounter;
+
+    private record RetryTask(String key, int attempts) {
+    }
+
+    @PostConstruct
+    public void init() {
+        CacheProperties.Invalidation config = cacheProperties.getInvalidation();
+        retryQueue = new ArrayBlockingQueue<>(config.getRetryQueueCapacity());
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "cache-invalidator"));
+        long interval = config.getRetryInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::retry, interval, interval, TimeUnit.MILLISECONDS);
+
+        //监控指标：重试队列长度、删除失败次数、超过重试次数被放弃的次数
+        Gauge.builder("cache.invalidation.retry.queue", retryQueue, BlockingQueue::size).register(meterRegistry);
+        failedCounter = Counter.builder("cache.invalidation.failed").register(meterRegistry);
+        droppedCounter = Counter.builder("cache.invalidation.dropped").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdown();
+    }
+
+    /**
+     * 删除缓存，当前存在事务时推迟到事务提交之后（事务回滚则不删除）
+     *
+     * @param key
+     */
+    public void invalidate(String key) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidateNow(key);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidateNow(key);
+            }
+        });
+    }
+
+    private void invalidateNow(String key) {
+        //1.立即删除一次
+        delete(new RetryTask(key, 0));
+        //2.延迟双删
+        CacheProperties.Invalidation config = cacheProperties.getInvalidation();
+        if (config.isDelayedDelete()) {
+            scheduler.schedule(() -> delete(new RetryTask(key, 0)),
+                    config.getDelay().toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void delete(RetryTask task) {
+        try {
+            cacheHandleUtils.delete(task.key());
+        } catch (Exception e) {
+            failedCounter.increment();
+            log.warn("删除缓存失败, 稍后重试, key:{}, 已重试次数:{}", task.key(), task.attempts(), e);
+            enqueue(new RetryTask(task.key(), task.attempts() + 1));
+        }
+    }
+
+    private void enqueue(RetryTask task) {
+        if (task.attempts() > cacheProperties.getInvalidation().getMaxRetries() || !retryQueue.offer(task)) {
+            droppedCounter.increment();
+            log.error("删除缓存失败且无法继续重试, 只能等待过期, key:{}", task.key());
+        }
+    }
+
+    /**
+     * 重试删除失败的key（只处理本轮开始时已在队列中的任务，本轮再次失败的留到下一轮）
+     */
+    private void retry() {
+        int size = retryQueue.size();
+        for (int i = 0; i < size; i++) {
+            RetryTask task = retryQueue.poll();
+            if (task == null) {
+                return;
+            }
+            delete(task);
+        }
+    }
+}
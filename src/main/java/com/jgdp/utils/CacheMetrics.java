@@ -0,0 +1,145 @@
+package com.jgdp.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 缓存监控指标，按key前缀和缓存策略统计：
+ * 命中、命中空值、未命中次数，重建（查询数据库）耗时，锁竞争次数，redis GET耗时
+ */
+@Component
+public class CacheMetrics {
+
+    //缓存策略
+    public static final String PASS_THROUGH = "pass-through";
+    public static final String MUTEX = "mutex";
+    public static final String LOGICAL_EXPIRE = "logical-expire";
+    public static final String BATCH = "batch";
+    public static final String RESPONSE = "response";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+    //key前缀 + 缓存策略 -> 指标
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    //key前缀 -> redis GET耗时
+    private final Map<String, Timer> redisGetTimers = new ConcurrentHashMap<>();
+
+    private static class Stats {
+        private Counter hits;
+        private Counter nullHits;
+        private Counter misses;
+        private Counter lockContention;
+        private Timer rebuild;
+    }
+
+    public void hit(String prefix, String strategy) {
+        stats(prefix, strategy).hits.increment();
+    }
+
+    public void nullHit(String prefix, String strategy) {
+        stats(prefix, strategy).nullHits.increment();
+    }
+
+    public void miss(String prefix, String strategy) {
+        stats(prefix, strategy).misses.increment();
+    }
+
+    /**
+     * 记录一次抢锁失败（需要等待其他请求重建或者返回旧数据）
+     *
+     * @param prefix
+     * @param strategy
+     */
+    public void lockContention(String prefix, String strategy) {
+        stats(prefix, strategy).lockContention.increment();
+    }
+
+    /**
+     * 执行并记录重建缓存时查询数据库的耗时
+     *
+     * @param prefix
+     * @param strategy
+     * @param dbQuery
+     * @param <T>
+     * @return
+     */
+    public <T> T recordRebuild(String prefix, String strategy, Supplier<T> dbQuery) {
+        return stats(prefix, strategy).rebuild.record(dbQuery);
+    }
+
+    /**
+     * 执行并记录redis GET的耗时
+     *
+     * @param prefix
+     * @param get
+     * @return
+     */
+    public <T> T recordGet(String prefix, Supplier<T> get) {
+        return redisGetTimers.computeIfAbsent(prefix, p -> Timer.builder("cache.redis.get")
+                .tag("prefix", p)
+                .publishPercentileHistogram()
+                .register(meterRegistry)).record(get);
+    }
+
+    /**
+     * 汇总所有前缀和策略的指标
+     *
+     * @return key前缀 -> 缓存策略 -> 指标值
+     */
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> result = new TreeMap<>();
+        stats.forEach((name, s) -> {
+            String[] parts = name.split("\\|", 2);
+            double hits = s.hits.count() + s.nullHits.count();
+            double total = hits + s.misses.count();
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("hits", (long) s.hits.count());
+            values.put("nullHits", (long) s.nullHits.count());
+            values.put("misses", (long) s.misses.count());
+            values.put("hitRatio", total == 0 ? 0 : hits / total);
+            values.put("lockContention", (long) s.lockContention.count());
+            values.put("rebuilds", s.rebuild.count());
+            values.put("rebuildMeanMillis", s.rebuild.mean(TimeUnit.MILLISECONDS));
+            values.put("rebuildMaxMillis", s.rebuild.max(TimeUnit.MILLISECONDS));
+            result.computeIfAbsent(parts[0], p -> new TreeMap<>()).put(parts[1], values);
+        });
+        redisGetTimers.forEach((prefix, timer) -> result.computeIfAbsent(prefix, p -> new TreeMap<>())
+                .put("redisGetMeanMillis", timer.mean(TimeUnit.MILLISECONDS)));
+        return result;
+    }
+
+    private Stats stats(String prefix, String strategy) {
+        return stats.computeIfAbsent(prefix + "|" + strategy, name -> {
+            Stats s = new Stats();
+            s.hits = requests(prefix, strategy, "hit");
+            s.nullHits = requests(prefix, strategy, "null-hit");
+            s.misses = requests(prefix, strategy, "miss");
+            s.lockContention = Counter.builder("cache.lock.contention")
+                    .tag("prefix", prefix).tag("strategy", strategy)
+                    .register(meterRegistry);
+            s.rebuild = Timer.builder("cache.rebuild.latency")
+                    .tag("prefix", prefix).tag("strategy", strategy)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+            return s;
+        });
+    }
+
+    private Counter requests(String prefix, String strategy, String result) {
+        return Counter.builder("cache.requests")
+                .tag("prefix", prefix).tag("strategy", strategy).tag("result", result)
+                .register(meterRegistry);
+    }
+}
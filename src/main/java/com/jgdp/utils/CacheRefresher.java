@@ -0,0 +1,143 @@
+package com.jgdp.utils;
+
+import com.jgdp.config.CacheProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 逻辑过期缓存的异步刷新
+ * 1.有界队列：队列满时丢弃刷新任务，旧数据继续提供服务
+ * 2.去重：同一个key在队列中或者执行中时不会重复提交
+ * 3.每个key一把分布式锁：同一时刻只有一个节点刷新同一个key
+ * 4.背压：数据库变慢（刷新耗时超过阈值）时，暂停提前刷新，只刷新已经过期的key
+ */
+@Slf4j
+@Component
+public class CacheRefresher {
+
+    @Autowired
+    private CacheProperties cacheProperties;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    private ThreadPoolExecutor executor;
+    //已提交还未执行完的key
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    //刷新耗时的指数移动平均值（毫秒）
+    private volatile double avgLatencyMillis;
+    private Timer latencyTimer;
+    private Counter droppedByQueueFull;
+    private Counter droppedBySlowDb;
+
+    @PostConstruct
+    public void init() {
+        CacheProperties.Refresh refresh = cacheProperties.getRefresh();
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+                refresh.getThreads(), refresh.getThreads(),
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(refresh.getQueueCapacity()),
+                r -> new Thread(r, "cache-refresh-" + threadNumber.incrementAndGet()),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        //监控指标：队列长度、刷新耗时、被丢弃的刷新次数
+        Gauge.builder("cache.refresh.queue", executor, e -> e.getQueue().size()).register(meterRegistry);
+        latencyTimer = Timer.builder("cache.refresh.latency").register(meterRegistry);
+        droppedByQueueFull = Counter.builder("cache.refresh.dropped").tag("reason", "queue-full").register(meterRegistry);
+        droppedBySlowDb = Counter.builder("cache.refresh.dropped").tag("reason", "slow-db").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    /**
+     * 判断是否需要提前刷新：剩余的逻辑过期时间小于ttl的一定比例
+     *
+     * @param remainingMillis 剩余的逻辑过期时间
+     * @param ttlMillis       写入时设置的逻辑过期时长
+     * @return
+     */
+    public boolean shouldRefreshAhead(long remainingMillis, long ttlMillis) {
+        return remainingMillis < ttlMillis * cacheProperties.getRefresh().getRefreshAheadRatio();
+    }
+
+    /**
+     * 提交刷新任务
+     *
+     * @param key       缓存key
+     * @param lockName  分布式锁名称
+     * @param proactive true表示未过期的提前刷新，false表示已过期的刷新
+     * @param task      刷新逻辑
+     * @return 是否提交成功
+     */
+    public boolean submit(String key, String lockName, boolean proactive, Runnable task) {
+        //1.数据库变慢时不再提前刷新，把有限的数据库资源留给已经过期的key
+        if (proactive && avgLatencyMillis > cacheProperties.getRefresh().getSlowThreshold().toMillis()) {
+            droppedBySlowDb.increment();
+            return false;
+        }
+        //2.去重
+        if (!pending.add(key)) {
+            return false;
+        }
+        //3.提交到有界队列
+        try {
+            executor.execute(() -> refresh(key, lockName, task));
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.remove(key);
+            droppedByQueueFull.increment();
+            log.warn("缓存刷新队列已满, 丢弃刷新任务, key:{}", key);
+            return false;
+        }
+    }
+
+    private void refresh(String key, String lockName, Runnable task) {
+        SimpleRedisLock lock = new SimpleRedisLock(stringRedisTemplate, lockName);
+        try {
+            //1.获取该key的分布式锁，失败说明其他节点正在刷新
+            if (!lock.tryLock(RedisConstants.LOCK_SHOP_TTL)) {
+                return;
+            }
+            //2.执行刷新并记录耗时
+            long begin = System.nanoTime();
+            try {
+                task.run();
+            } finally {
+                long cost = System.nanoTime() - begin;
+                latencyTimer.record(cost, TimeUnit.NANOSECONDS);
+                recordLatency(TimeUnit.NANOSECONDS.toMillis(cost));
+                lock.unlock();
+            }
+        } catch (Exception e) {
+            log.error("缓存刷新失败, key:{}", key, e);
+        } finally {
+            pending.remove(key);
+        }
+    }
+
+    private synchronized void recordLatency(long millis) {
+        avgLatencyMillis = avgLatencyMillis * 0.8 + millis * 0.2;
+    }
+}
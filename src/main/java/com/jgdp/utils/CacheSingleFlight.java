@@ -0,0 +1,176 @@
+package com.jgdp.utils;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 缓存重建的single-flight
+ * 1.节点内：同一个key同时只有一个线程执行重建，其他线程直接等待它的结果
+ * 2.节点间：拿不到分布式锁的节点等待重建完成的广播被唤醒，而不是休眠轮询
+ */
+@Slf4j
+@Component
+public class CacheSingleFlight {
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+    //节点内正在重建的key -> 重建结果
+    private final Map<String, CompletableFuture<Object>> inflight = new ConcurrentHashMap<>();
+    //等待其他节点重建完成的key -> 唤醒信号
+    private final Map<String, CompletableFuture<Void>> remoteWaiters = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String key = new String(message.getBody(), StandardCharsets.UTF_8);
+            wakeUp(key);
+        }, new ChannelTopic(RedisConstants.CACHE_REBUILT_CHANNEL));
+    }
+
+    /**
+     * 执行重建，同一个key的并发调用共享同一次执行结果
+     *
+     * @param key
+     * @param loader 重建逻辑
+     * @param <R>
+     * @return
+     */
+    public <R> R execute(String key, Supplier<R> loader) {
+        return execute(key, loader, () -> {
+        });
+    }
+
+    /**
+     * 执行重建，同一个key的并发调用共享同一次执行结果
+     *
+     * @param key
+     * @param loader 重建逻辑
+     * @param onJoin 已经有线程在重建、当前调用只等待结果时执行（例如释放当前调用已经获取的锁）
+     * @param <R>
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <R> R execute(String key, Supplier<R> loader, Runnable onJoin) {
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inflight.putIfAbsent(key, future);
+        if (existing != null) {
+            onJoin.run();
+            //已经有线程在重建，等待它的结果，等待超时后自己执行重建
+            return (R) await(key, existing, loader);
+        }
+        try {
+            R r = loader.get();
+            future.complete(r);
+            return r;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(key, future);
+        }
+    }
+
+    /**
+     * 注册对其他节点重建结果的等待，必须在尝试获取分布式锁之前调用，避免错过唤醒
+     *
+     * @param key
+     * @return
+     */
+    public CompletableFuture<Void> watch(String key) {
+        return remoteWaiters.computeIfAbsent(key, k -> new CompletableFuture<>());
+    }
+
+    /**
+     * 取消等待
+     *
+     * @param key
+     * @param signal
+     */
+    public void unwatch(String key, CompletableFuture<Void> signal) {
+        remoteWaiters.remove(key, signal);
+    }
+
+    /**
+     * 等待其他节点重建完成，最多等待锁的超时时间
+     *
+     * @param key
+     * @param signal watch返回的唤醒信号
+     * @return true表示被唤醒，false表示等待超时
+     */
+    public boolean awaitRemote(String key, CompletableFuture<Void> signal) {
+        try {
+            signal.get(RedisConstants.LOCK_SHOP_TTL, TimeUnit.SECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            log.warn("等待缓存重建超时, key:{}", key);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            return false;
+        } finally {
+            remoteWaiters.remove(key, signal);
+        }
+    }
+
+    /**
+     * 广播重建完成（本节点同步唤醒，其他节点由订阅消息唤醒）
+     *
+     * @param key
+     */
+    public void publishRebuilt(String key) {
+        wakeUp(key);
+        stringRedisTemplate.convertAndSend(RedisConstants.CACHE_REBUILT_CHANNEL, key);
+    }
+
+    private void wakeUp(String key) {
+        CompletableFuture<Void> signal = remoteWaiters.remove(key);
+        if (signal != null) {
+            signal.complete(null);
+        }
+    }
+
+    /**
+     * 等待节点内的重建结果
+     * 执行重建的线程最多等待其他节点锁的超时时间后再查询数据库，这里等待两倍的锁超时时间，
+     * 仍未完成时（例如数据库很慢）由当前线程自己执行重建，而不是抛出异常
+     *
+     * @param key
+     * @param future
+     * @param loader
+     * @return
+     */
+    private Object await(String key, CompletableFuture<Object> future, Supplier<?> loader) {
+        try {
+            return future.get(RedisConstants.LOCK_SHOP_TTL * 2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException ? (RuntimeException) cause : new RuntimeException(cause);
+        } catch (TimeoutException e) {
+            log.warn("等待节点内缓存重建超时, 自己执行重建, key:{}", key);
+            return loader.get();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.jgdp.utils;
+
+import com.jgdp.config.CacheProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 缓存过期时间策略（防缓存雪崩）
+ * 1.在基础ttl上增加随机的抖动，避免同一批写入的key在同一时刻集中过期
+ * 2.访问频率高的key使用更长的ttl
+ * 3.按分钟统计未来各时刻将要过期的key数量，用于观察过期时间是否扎堆
+ */
+@Component
+public class CacheTtlPolicy {
+
+    //过期时间分布统计的分钟数（环形数组，超出的部分会覆盖）
+    private static final int HISTOGRAM_MINUTES = 24 * 60;
+    //未配置的前缀在监控指标中的标签
+    private static final String OTHER_PREFIX = "other";
+
+    @Autowired
+    private CacheProperties cacheProperties;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    //访问频率统计
+    private CountMinSketch sketch;
+    //第i个槽位对应的分钟（从1970年开始的分钟数）
+    private final AtomicLongArray slotMinutes = new AtomicLongArray(HISTOGRAM_MINUTES);
+    //第i个槽位中将要过期的key数量
+    private final AtomicLongArray slotCounts = new AtomicLongArray(HISTOGRAM_MINUTES);
+    private final Map<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        sketch = new CountMinSketch(cacheProperties.getTtl().getSketchSize());
+    }
+
+    /**
+     * 记录一次访问，用于判断key的热度
+     *
+     * @param key
+     */
+    public void recordAccess(String key) {
+        sketch.increment(key);
+    }
+
+    /**
+     * 计算实际写入的过期时间（秒）
+     *
+     * @param key
+     * @param expireTime 基础过期时间
+     * @param timeUnit
+     * @return
+     */
+    public long ttlSeconds(String key, Long expireTime, TimeUnit timeUnit) {
+        CacheProperties.Ttl ttlConfig = cacheProperties.getTtl();
+        CacheProperties.TtlSpec spec = specOf(key);
+        long ttl = timeUnit.toSeconds(expireTime);
+
+        //1.热点key延长过期时间
+        if (spec != null && spec.getHotThreshold() > 0 && sketch.estimate(key) >= spec.getHotThreshold()) {
+            ttl = (long) (ttl * spec.getHotMultiplier());
+        }
+
+        //2.增加[0, ttl * 抖动比例]的随机时间
+        double jitterRatio = spec == null ? ttlConfig.getDefaultJitterRatio() : spec.getJitterRatio();
+        long jitter = (long) (ttl * jitterRatio);
+        if (jitter > 0) {
+            ttl += ThreadLocalRandom.current().nextLong(jitter + 1);
+        }
+        ttl = Math.max(ttl, 1);
+
+        //3.记录过期时间分布
+        record(spec == null ? OTHER_PREFIX : spec.getPrefix(), ttl);
+        return ttl;
+    }
+
+    /**
+     * 从当前分钟开始，每分钟将要过期的key数量
+     *
+     * @return 分钟 -> key数量
+     */
+    public Map<LocalDateTime, Long> expiryHistogram() {
+        long nowMinute = System.currentTimeMillis() / 60000;
+        Map<LocalDateTime, Long> histogram = new TreeMap<>();
+        for (int i = 0; i < HISTOGRAM_MINUTES; i++) {
+            long minute = slotMinutes.get(i);
+            long count = slotCounts.get(i);
+            if (minute >= nowMinute && count > 0) {
+                histogram.put(LocalDateTime.ofInstant(Instant.ofEpochSecond(minute * 60), ZoneId.systemDefault()), count);
+            }
+        }
+        return histogram;
+    }
+
+    private void record(String prefix, long ttlSeconds) {
+        summaries.computeIfAbsent(prefix, p -> DistributionSummary.builder("cache.ttl.assigned")
+                        .baseUnit("seconds")
+                        .tag("prefix", p)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry))
+                .record(ttlSeconds);
+
+        long minute = (System.currentTimeMillis() / 1000 + ttlSeconds) / 60;
+        int slot = (int) (minute % HISTOGRAM_MINUTES);
+        long old = slotMinutes.get(slot);
+        if (old != minute && slotMinutes.compareAndSet(slot, old, minute)) {
+            //槽位中是过期的旧数据，清零后复用
+            slotCounts.set(slot, 0);
+        }
+        slotCounts.incrementAndGet(slot);
+    }
+
+    private CacheProperties.TtlSpec specOf(String key) {
+        for (CacheProperties.TtlSpec spec : cacheProperties.getTtl().getSpecs()) {
+            if (key.startsWith(spec.getPrefix())) {
+                return spec;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,183 @@
+package com.jgdp.utils;
+
+import com.jgdp.config.CacheProperties;
+import com.jgdp.dto.WarmUpReport;
+import com.jgdp.entity.Shop;
+import com.jgdp.mapper.ShopMapper;
+import com.jgdp.service.IShopTypeService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 缓存预热
+ * 通过MyBatis游标流式读取tb_shop，按固定大小分批，用管道批量写入redis（逻辑过期格式）并写入店铺GEO数据，
+ * 内存中最多只有一批数据，与表的大小无关；项目启动时自动执行，也可以通过接口手动触发
+ */
+@Slf4j
+@Component
+public class CacheWarmer implements ApplicationRunner {
+
+    @Autowired
+    private CacheProperties cacheProperties;
+    @Autowired
+    private RedisTemplate<String, byte[]> cacheRedisTemplate;
+    @Autowired
+    private CacheCodec codec;
+    @Autowired
+    private CacheTtlPolicy ttlPolicy;
+    @Autowired
+    private CacheHandleUtils cacheHandleUtils;
+    @Autowired
+    private ShopMapper shopMapper;
+    @Autowired
+    private IShopTypeService shopTypeService;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    //预热在独立线程中执行，不阻塞启动和请求线程
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "cache-warmup"));
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private volatile WarmUpReport report = new WarmUpReport();
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (cacheProperties.getWarmUp().isEnabled()) {
+            start();
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 开始预热（已经在预热中时忽略）
+     *
+     * @return 是否开始了新的预热
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        executor.execute(() -> {
+            try {
+                warmUpShops();
+                //店铺分类数据量很小，直接走查询逻辑加载到缓存
+                shopTypeService.queryList();
+            } catch (Exception e) {
+                log.error("缓存预热失败", e);
+                report.setErrorMsg(e.getMessage());
+            } finally {
+                report.setRunning(false);
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 当前（或上一次）预热的进度
+     *
+     * @return
+     */
+    public WarmUpReport getReport() {
+        return report;
+    }
+
+    private void warmUpShops() {
+        int chunkSize = cacheProperties.getWarmUp().getChunkSize();
+        WarmUpReport current = new WarmUpReport();
+        current.setRunning(true);
+        current.setTable("tb_shop");
+        current.setRows(0L);
+        current.setStartTime(LocalDateTime.now());
+        report = current;
+        long begin = System.currentTimeMillis();
+        log.info("开始预热店铺缓存...");
+
+        //游标需要在事务（同一个SqlSession）中使用
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Shop> chunk = new ArrayList<>(chunkSize);
+            try (Cursor<Shop> cursor = shopMapper.scanAll()) {
+                for (Shop shop : cursor) {
+                    chunk.add(shop);
+                    if (chunk.size() >= chunkSize) {
+                        writeShops(chunk);
+                        updateProgress(current, chunk.size(), begin);
+                        chunk.clear();
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    writeShops(chunk);
+                    updateProgress(current, chunk.size(), begin);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        log.info("店铺缓存预热完成, 共{}条, 耗时{}ms, 吞吐量{}行/秒",
+                current.getRows(), current.getDurationMillis(), current.getRowsPerSecond());
+    }
+
+    /**
+     * 用管道批量写入一批店铺缓存和GEO数据
+     *
+     * @param shops
+     */
+    private void writeShops(List<Shop> shops) {
+        RedisSerializer<String> serializer = RedisSerializer.string();
+        Duration grace = cacheHandleUtils.graceOf(RedisConstants.CACHE_SHOP_KEY);
+        long graceSeconds = grace == null ? 0 : grace.getSeconds();
+        cacheRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Shop shop : shops) {
+                //1.店铺缓存，使用逻辑过期格式，redis中的过期时间 = 逻辑过期时间（带随机抖动） + 宽限期
+                String key = RedisConstants.CACHE_SHOP_KEY + shop.getId();
+                long ttl = ttlPolicy.ttlSeconds(key, RedisConstants.CACHE_SHOP_TTL, TimeUnit.MINUTES);
+                LocalDateTime expireTime = LocalDateTime.now().plusSeconds(ttl);
+                connection.stringCommands().set(serializer.serialize(key), codec.encodeWithExpire(shop, expireTime),
+                        Expiration.seconds(ttl + graceSeconds), RedisStringCommands.SetOption.upsert());
+                //2.店铺GEO数据，按店铺类型分组
+                if (shop.getX() != null && shop.getY() != null) {
+                    connection.geoCommands().geoAdd(
+                            serializer.serialize(RedisConstants.SHOP_GEO_KEY + shop.getTypeId()),
+                            new Point(shop.getX(), shop.getY()),
+                            serializer.serialize(shop.getId().toString()));
+                }
+            }
+            return null;
+        });
+    }
+
+    private void updateProgress(WarmUpReport current, int rows, long begin) {
+        long duration = Math.max(System.currentTimeMillis() - begin, 1);
+        current.setRows(current.getRows() + rows);
+        current.setDurationMillis(duration);
+        current.setRowsPerSecond(current.getRows() * 1000 / duration);
+        log.debug("店铺缓存预热中, 已写入{}条, 吞吐量{}行/秒", current.getRows(), current.getRowsPerSecond());
+    }
+}
@@ -0,0 +1,170 @@
+package com.jgdp.utils;
+
+import com.jgdp.config.CacheProperties;
+import io.lettuce.core.ClientOptions;
+import io.lettuce.core.RedisChannelHandler;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisConnectionStateAdapter;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.TrackingArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.codec.StringCodec;
+import io.lettuce.core.protocol.ProtocolVersion;
+import io.lettuce.core.support.caching.CacheAccessor;
+import io.lettuce.core.support.caching.CacheFrontend;
+import io.lettuce.core.support.caching.ClientSideCaching;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 基于Redis服务端key追踪（RESP3 CLIENT TRACKING BCAST）的客户端缓存
+ * 读取时命中本地map则不访问redis，配置前缀下的key被修改或删除时由redis主动推送失效消息，
+ * 适合店铺、店铺分类这类读多写少的数据，不需要自己广播失效消息
+ * redis版本低于6或者连接断开时自动退回直接访问redis，并定时尝试重新开启
+ */
+@Slf4j
+@Component
+public class ClientSideCache {
+
+    @Autowired
+    private CacheProperties cacheProperties;
+    @Autowired
+    private RedisProperties redisProperties;
+    @Autowired
+    private RedisTemplate<String, byte[]> cacheRedisTemplate;
+    private RedisClient client;
+    private volatile StatefulRedisConnection<String, byte[]> connection;
+    private volatile CacheFrontend<String, byte[]> frontend;
+    //本地缓存，按访问顺序淘汰，条目数不超过配置的上限
+    private Map<String, byte[]> cache;
+
+    @PostConstruct
+    public void init() {
+        CacheProperties.ClientSide config = cacheProperties.getClientSide();
+        if (!config.isEnabled()) {
+            return;
+        }
+        int maxSize = config.getMaxSize();
+        cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                return size() > maxSize;
+            }
+        });
+        RedisURI.Builder uri = RedisURI.builder()
+                .withHost(redisProperties.getHost())
+                .withPort(redisProperties.getPort())
+                .withDatabase(redisProperties.getDatabase());
+        if (redisProperties.getPassword() != null) {
+            uri.withPassword(redisProperties.getPassword().toCharArray());
+        }
+        client = RedisClient.create(uri.build());
+        client.setOptions(ClientOptions.builder().protocolVersion(ProtocolVersion.RESP3).build());
+        //连接断开期间可能错过失效消息，清空本地缓存并退回直接访问redis
+        //只处理当前追踪连接的断开事件，重新开启时关闭旧连接产生的事件不能关掉新开启的追踪
+        client.addListener(new RedisConnectionStateAdapter() {
+            @Override
+            public void onRedisDisconnected(RedisChannelHandler<?, ?> channel) {
+                if (channel == connection) {
+                    disable("连接断开");
+                }
+            }
+        });
+        enable();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (client != null) {
+            client.shutdown();
+        }
+    }
+
+    /**
+     * 判断key是否走客户端缓存
+     *
+     * @param key
+     * @return
+     */
+    public boolean supports(String key) {
+        if (frontend == null) {
+            return false;
+        }
+        for (String prefix : cacheProperties.getClientSide().getPrefixes()) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 读取key，本地未命中时从redis读取并缓存
+     * supports()之后连接可能断开（frontend被置空），此时直接从redis读取
+     *
+     * @param key
+     * @return
+     */
+    public byte[] get(String key) {
+        CacheFrontend<String, byte[]> current = frontend;
+        if (current == null) {
+            return cacheRedisTemplate.opsForValue().get(key);
+        }
+        return current.get(key);
+    }
+
+    /**
+     * 追踪不可用时定时尝试重新开启
+     */
+    @Scheduled(fixedDelayString = "${jgdp.cache.client-side.retry-interval:30s}")
+    public void retryEnable() {
+        if (client != null && frontend == null) {
+            enable();
+        }
+    }
+
+    private synchronized void enable() {
+        try {
+            //每次开启都使用新连接，旧连接上的追踪状态和推送监听一起丢弃
+            if (connection != null) {
+                connection.closeAsync();
+            }
+            connection = client.connect(RedisCodec.of(StringCodec.UTF8, ByteArrayCodec.INSTANCE));
+            List<String> prefixes = cacheProperties.getClientSide().getPrefixes();
+            TrackingArgs trackingArgs = TrackingArgs.Builder.enabled()
+                    .bcast()
+                    .prefixes(prefixes.toArray(new String[0]));
+            cache.clear();
+            frontend = ClientSideCaching.enable(CacheAccessor.forMap(cache), connection, trackingArgs);
+            log.info("客户端缓存已开启, 追踪的前缀:{}", prefixes);
+        } catch (Exception e) {
+            //redis版本低于6（不支持RESP3或CLIENT TRACKING）等情况
+            frontend = null;
+            log.warn("开启key追踪失败, 退回直接访问redis, 原因:{}", e.getMessage());
+        }
+    }
+
+    private void disable(String reason) {
+        if (frontend == null) {
+            return;
+        }
+        frontend = null;
+        cache.clear();
+        log.warn("客户端缓存不可用, 退回直接访问redis, 原因:{}", reason);
+    }
+}
@@ -0,0 +1,135 @@
+package com.jgdp.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 压缩编解码（装饰其他编解码器）
+ * 编码结果超过阈值时用Deflate（最快速度档）压缩，压缩后没有变小则保留原数据
+ * 格式：1字节魔数 + 1字节标志位（压缩算法） + 4字节原始长度 + 压缩数据；
+ * 不是以魔数开头的数据直接交给被装饰的编解码器处理，开启或关闭压缩都不影响读取已有缓存
+ */
+public class CompressingCacheCodec implements CacheCodec {
+
+    //魔数（不会是JSON的首字节，也不同于BinaryCacheCodec的魔数）
+    static final byte MAGIC = (byte) 0xC1;
+    //压缩算法标志：Deflate
+    static final byte FLAG_DEFLATE = 1;
+    //头部长度
+    static final int HEADER_LENGTH = 6;
+
+    private static final ThreadLocal<Deflater> DEFLATER =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+    private static final ThreadLocal<Inflater> INFLATER =
+            ThreadLocal.withInitial(() -> new Inflater(true));
+
+    private final CacheCodec delegate;
+    //超过该字节数才压缩
+    private final int threshold;
+    private final Counter rawBytes;
+    private final Counter compressedBytes;
+    private final Timer compressTimer;
+    private final Timer decompressTimer;
+
+    public CompressingCacheCodec(CacheCodec delegate, int threshold, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.threshold = threshold;
+        //监控指标：压缩前后的字节数、压缩率、压缩和解压的耗时
+        this.rawBytes = Counter.builder("cache.compression.bytes").tag("stage", "raw").register(meterRegistry);
+        this.compressedBytes = Counter.builder("cache.compression.bytes").tag("stage", "compressed").register(meterRegistry);
+        Gauge.builder("cache.compression.ratio", this,
+                c -> c.rawBytes.count() == 0 ? 1 : c.compressedBytes.count() / c.rawBytes.count())
+                .register(meterRegistry);
+        this.compressTimer = Timer.builder("cache.compression.time").tag("op", "compress").register(meterRegistry);
+        this.decompressTimer = Timer.builder("cache.compression.time").tag("op", "decompress").register(meterRegistry);
+    }
+
+    @Override
+    public byte[] encode(Object value) {
+        return compress(delegate.encode(value));
+    }
+
+    @Override
+    public <R> R decode(byte[] bytes, Class<R> type) {
+        return delegate.decode(decompress(bytes), type);
+    }
+
+    @Override
+    public byte[] encodeWithExpire(Object value, LocalDateTime expireTime) {
+        return compress(delegate.encodeWithExpire(value, expireTime));
+    }
+
+    @Override
+    public RedisData decodeWithExpire(byte[] bytes, Class<?> type) {
+        return delegate.decodeWithExpire(decompress(bytes), type);
+    }
+
+    private byte[] compress(byte[] bytes) {
+        if (bytes.length < threshold) {
+            return bytes;
+        }
+        long begin = System.nanoTime();
+        Deflater deflater = DEFLATER.get();
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            //压缩后没有变小就不再使用，所以输出缓冲区只需要原数据的长度
+            byte[] out = new byte[HEADER_LENGTH + bytes.length];
+            int length = HEADER_LENGTH;
+            while (!deflater.finished() && length < out.length) {
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            if (!deflater.finished()) {
+                return bytes;
+            }
+            ByteBuffer.wrap(out, 0, HEADER_LENGTH).put(MAGIC).put(FLAG_DEFLATE).putInt(bytes.length);
+            rawBytes.increment(bytes.length);
+            compressedBytes.increment(length);
+            return Arrays.copyOf(out, length);
+        } finally {
+            deflater.reset();
+            compressTimer.record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private byte[] decompress(byte[] bytes) {
+        if (bytes.length < HEADER_LENGTH || bytes[0] != MAGIC || bytes[1] != FLAG_DEFLATE) {
+            return bytes;
+        }
+        long begin = System.nanoTime();
+        Inflater inflater = INFLATER.get();
+        try {
+            byte[] out = new byte[ByteBuffer.wrap(bytes, 2, 4).getInt()];
+            inflater.setInput(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+            int length = 0;
+            while (length < out.length && !inflater.finished()) {
+                int n = inflater.inflate(out, length, out.length - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != out.length) {
+                throw new RuntimeException("缓存数据解压失败, 数据不完整");
+            }
+            return out;
+        } catch (DataFormatException e) {
+            throw new RuntimeException("缓存数据解压失败", e);
+        } finally {
+            inflater.reset();
+            decompressTimer.record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
+        }
+    }
+}
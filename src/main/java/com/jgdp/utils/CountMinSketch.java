@@ -0,0 +1,103 @@
+package com.jgdp.utils;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * Count-Min Sketch，用固定大小的内存估算每个key的访问频率（只会高估，不会低估）
+ * 累计写入次数达到采样窗口后所有计数减半，让频率随时间衰减，反映的是最近的访问热度
+ */
+public class CountMinSketch {
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+    //每行的宽度（2的幂）
+    private final int width;
+    private final AtomicIntegerArray table;
+    //采样窗口：写入次数达到该值后计数减半
+    private final long sampleSize;
+    private final AtomicLong additions = new AtomicLong();
+
+    /**
+     * @param expectedKeys 预计同时活跃的key数量
+     */
+    public CountMinSketch(int expectedKeys) {
+        int w = Integer.highestOneBit(Math.max(expectedKeys, 16) - 1) << 1;
+        this.width = w;
+        this.table = new AtomicIntegerArray(w * SEEDS.length);
+        this.sampleSize = 10L * w;
+    }
+
+    /**
+     * 记录一次访问
+     *
+     * @param key
+     * @return 记录后的估算频率
+     */
+    public int increment(String key) {
+        int hash = spread(key.hashCode());
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < SEEDS.length; i++) {
+            min = Math.min(min, table.incrementAndGet(indexOf(hash, i)));
+        }
+        if (additions.incrementAndGet() >= sampleSize) {
+            reset();
+        }
+        return min;
+    }
+
+    /**
+     * 估算访问频率
+     *
+     * @param key
+     * @return
+     */
+    public int estimate(String key) {
+        int hash = spread(key.hashCode());
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < SEEDS.length; i++) {
+            min = Math.min(min, table.get(indexOf(hash, i)));
+        }
+        return min;
+    }
+
+    /**
+     * 所有计数减半（按时间窗口衰减时由外部定时调用）
+     */
+    public synchronized void decay() {
+        halve();
+        additions.set(additions.get() / 2);
+    }
+
+    /**
+     * 所有计数减半
+     */
+    private synchronized void reset() {
+        if (additions.get() < sampleSize) {
+            return;
+        }
+        halve();
+        additions.set(sampleSize / 2);
+    }
+
+    private void halve() {
+        for (int i = 0; i < table.length(); i++) {
+            table.set(i, table.get(i) >>> 1);
+        }
+    }
+
+    private int indexOf(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return row * width + ((int) h & (width - 1));
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
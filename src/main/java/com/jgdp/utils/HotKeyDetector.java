@@ -0,0 +1,143 @@
+package com.jgdp.utils;
+
+import com.jgdp.config.CacheProperties;
+import com.jgdp.dto.HotKeyDTO;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 热点key探测
+ * 用Count-Min Sketch统计本节点每个key的访问频率（按时间窗口衰减），
+ * 访问次数超过阈值的key自动升级为热点key，在本地保存一份短期副本，不再访问redis；
+ * 访问次数降到阈值一半以下时降级，删除本地副本
+ * 本地副本直接返回给所有读取方（不复制），只探测配置的前缀，调用方会修改返回值的前缀不能开启
+ */
+@Slf4j
+@Component
+public class HotKeyDetector {
+
+    @Autowired
+    private CacheProperties cacheProperties;
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+    private CountMinSketch sketch;
+    //热点key -> 本地副本（副本为null表示已升级但还没有写入数据）
+    private final Map<String, HotEntry> hotKeys = new ConcurrentHashMap<>();
+
+    private static class HotEntry {
+        private volatile Object value;
+        //本地副本的过期时间（毫秒时间戳）
+        private volatile long expireAt;
+    }
+
+    @PostConstruct
+    public void init() {
+        sketch = new CountMinSketch(cacheProperties.getHotKey().getSketchSize());
+        //缓存失效时删除本地副本（热点key本身保留，下次读取时重新写入副本）
+        invalidationBus.subscribe(key -> {
+            HotEntry entry = hotKeys.get(key);
+            if (entry != null) {
+                entry.value = null;
+            }
+        });
+    }
+
+    /**
+     * 记录一次访问，访问次数达到阈值时升级为热点key
+     *
+     * @param key
+     */
+    public void recordAccess(String key) {
+        CacheProperties.HotKey config = cacheProperties.getHotKey();
+        if (!config.isEnabled() || !supports(config, key)) {
+            return;
+        }
+        int count = sketch.increment(key);
+        if (count >= config.getThreshold() && !hotKeys.containsKey(key) && hotKeys.size() < config.getMaxHotKeys()) {
+            hotKeys.putIfAbsent(key, new HotEntry());
+            log.info("发现热点key:{}, 当前窗口访问次数:{}", key, count);
+        }
+    }
+
+    private static boolean supports(CacheProperties.HotKey config, String key) {
+        for (String prefix : config.getPrefixes()) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 读取热点key的本地副本
+     *
+     * @param key
+     * @param type
+     * @param <R>
+     * @return 不是热点key或者副本已过期时返回null
+     */
+    public <R> R get(String key, Class<R> type) {
+        HotEntry entry = hotKeys.get(key);
+        if (entry == null || entry.expireAt < System.currentTimeMillis()) {
+            return null;
+        }
+        Object value = entry.value;
+        return type.isInstance(value) ? type.cast(value) : null;
+    }
+
+    /**
+     * 如果是热点key，保存一份本地副本
+     *
+     * @param key
+     * @param value
+     */
+    public void offer(String key, Object value) {
+        HotEntry entry = hotKeys.get(key);
+        if (entry == null || value == null) {
+            return;
+        }
+        entry.value = value;
+        entry.expireAt = System.currentTimeMillis() + cacheProperties.getHotKey().getLocalTtl().toMillis();
+    }
+
+    /**
+     * 当前的热点key，按访问次数从高到低排列
+     *
+     * @return
+     */
+    public List<HotKeyDTO> hotKeys() {
+        return hotKeys.keySet().stream()
+                .map(key -> new HotKeyDTO(key, sketch.estimate(key)))
+                .sorted(Comparator.comparing(HotKeyDTO::getCount).reversed())
+                .toList();
+    }
+
+    /**
+     * 每个时间窗口结束时衰减访问次数，并降级不再热的key
+     */
+    @Scheduled(fixedDelayString = "${jgdp.cache.hot-key.window:1s}")
+    public void rotateWindow() {
+        if (!cacheProperties.getHotKey().isEnabled()) {
+            return;
+        }
+        sketch.decay();
+        int demoteThreshold = cacheProperties.getHotKey().getThreshold() / 2;
+        hotKeys.keySet().removeIf(key -> {
+            boolean cold = sketch.estimate(key) < demoteThreshold;
+            if (cold) {
+                log.info("热点key降级:{}", key);
+            }
+            return cold;
+        });
+    }
+}
@@ -0,0 +1,66 @@
+package com.jgdp.utils;
+
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 基于hutool的JSON编解码（与原先StringRedisTemplate写入的格式一致）
+ */
+public class JsonCacheCodec implements CacheCodec {
+
+    @Override
+    public byte[] encode(Object value) {
+        return JSONUtil.toJsonStr(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public <R> R decode(byte[] bytes, Class<R> type) {
+        String json = new String(bytes, StandardCharsets.UTF_8);
+        if (type.isArray()) {
+            //数组（@Cached方法返回的List按数组缓存）
+            return toArray(JSONUtil.parseArray(json), type);
+        }
+        if (type == RedisData.class || !json.startsWith("{")) {
+            return JSONUtil.toBean(json, type);
+        }
+        //带逻辑过期时间的值（例如缓存预热写入的数据）按普通值读取时，忽略逻辑过期时间直接取data
+        JSONObject jsonObject = JSONUtil.parseObj(json);
+        if (jsonObject.size() == 2 && jsonObject.containsKey("expireTime") && jsonObject.containsKey("data")) {
+            jsonObject = jsonObject.getJSONObject("data");
+        }
+        return jsonObject.toBean(type);
+    }
+
+    @Override
+    public byte[] encodeWithExpire(Object value, LocalDateTime expireTime) {
+        RedisData redisData = new RedisData();
+        redisData.setData(value);
+        redisData.setExpireTime(expireTime);
+        return encode(redisData);
+    }
+
+    @Override
+    public RedisData decodeWithExpire(byte[] bytes, Class<?> type) {
+        RedisData redisData = decode(bytes, RedisData.class);
+        Object data = redisData.getData();
+        if (data instanceof JSONArray array && type.isArray()) {
+            redisData.setData(toArray(array, type));
+        } else if (data instanceof JSONObject object) {
+            redisData.setData(JSONUtil.toBean(object, type));
+        }
+        return redisData;
+    }
+
+    private static <R> R toArray(JSONArray array, Class<R> type) {
+        List<?> list = array.toList(type.getComponentType());
+        return type.cast(list.toArray((Object[]) Array.newInstance(type.getComponentType(), 0)));
+    }
+}
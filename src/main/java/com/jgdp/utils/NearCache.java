@@ -0,0 +1,102 @@
+package com.jgdp.utils;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LFUCache;
+import com.jgdp.config.CacheProperties;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 进程内的本地缓存（L1），位于Redis（L2）之前
+ * 每个key前缀一个容量有界的LFU缓存，条目写入后超过maxAge即失效，
+ * 跨节点的一致性依赖 CacheInvalidationBus 广播的失效消息
+ */
+@Slf4j
+@Component
+public class NearCache {
+
+    @Autowired
+    private CacheProperties cacheProperties;
+    @Autowired
+    private CacheInvalidationBus invalidationBus;
+    //key前缀 -> 该前缀的本地缓存
+    private final Map<String, LFUCache<String, Object>> caches = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        CacheProperties.Near near = cacheProperties.getNear();
+        if (!near.isEnabled()) {
+            return;
+        }
+        for (CacheProperties.NearSpec spec : near.getSpecs()) {
+            caches.put(spec.getPrefix(), CacheUtil.newLFUCache(spec.getMaxSize(), spec.getMaxAge().toMillis()));
+            log.info("开启本地缓存, 前缀:{}, 容量:{}, 存活时间:{}", spec.getPrefix(), spec.getMaxSize(), spec.getMaxAge());
+        }
+        //订阅失效消息
+        invalidationBus.subscribe(this::invalidate);
+    }
+
+    /**
+     * 判断该前缀是否开启了本地缓存
+     *
+     * @param keyPrefix
+     * @return
+     */
+    public boolean isEnabled(String keyPrefix) {
+        return caches.containsKey(keyPrefix);
+    }
+
+    /**
+     * 从本地缓存中获取数据
+     *
+     * @param keyPrefix
+     * @param key
+     * @param type
+     * @param <R>
+     * @return 未命中或者未开启时返回null
+     */
+    public <R> R get(String keyPrefix, String key, Class<R> type) {
+        LFUCache<String, Object> cache = caches.get(keyPrefix);
+        if (cache == null) {
+            return null;
+        }
+        //不刷新最后访问时间，保证maxAge从写入时开始计算
+        Object value = cache.get(key, false);
+        return type.isInstance(value) ? type.cast(value) : null;
+    }
+
+    /**
+     * 写入本地缓存（空值不缓存）
+     *
+     * @param keyPrefix
+     * @param key
+     * @param value
+     */
+    public void put(String keyPrefix, String key, Object value) {
+        LFUCache<String, Object> cache = caches.get(keyPrefix);
+        if (cache == null || value == null) {
+            return;
+        }
+        cache.put(key, value);
+    }
+
+    /**
+     * 清理本地缓存中的key
+     *
+     * @param key 完整的缓存key
+     */
+    public void invalidate(String key) {
+        caches.forEach((prefix, cache) -> {
+            if (key.startsWith(prefix)) {
+                cache.remove(key);
+            }
+        });
+    }
+}
@@ -16,11 +16,42 @@ public class RedisConstants {
     public static final Long CACHE_NULL_TTL = 2L;
 
     //店铺key过期时间
-    public static final Long CACHE_SHOP_TTL = 30L;
+    public static final long CACHE_SHOP_TTL = 30L;
     //店铺key
     public static final String CACHE_SHOP_KEY = "cache:shop:";
+    //店铺详情响应key（序列化好的Result JSON）
+    public static final String CACHE_SHOP_RESP_KEY = "cache:shopResp:";
+    //用户key过期时间
+    public static final Long CACHE_USER_TTL = 30L;
+    //用户key（只缓存UserDTO中的公开信息）
+    public static final String CACHE_USER_KEY = "cache:user:";
+    //用户详情key过期时间
+    public static final long CACHE_USER_INFO_TTL = 30L;
+    //用户详情key
+    public static final String CACHE_USER_INFO_KEY = "cache:userInfo:";
+    //店铺优惠券列表key过期时间（包含库存，过期时间较短）
+    public static final long CACHE_SHOP_VOUCHER_TTL = 1L;
+    //店铺优惠券列表key
+    public static final String CACHE_SHOP_VOUCHER_KEY = "cache:shopVoucher:";
+    //热门博客分页key过期时间
+    public static final long CACHE_BLOG_HOT_TTL = 1L;
+    //热门博客分页key
+    public static final String CACHE_BLOG_HOT_KEY = "cache:blogHot:";
+
     //店铺类型key
     public static final String CACHE_SHOP_TYPE_KEY = "cache:shopType:";
+    //店铺类型版本号key（店铺类型变化时自增，各节点据此刷新本地快照）
+    public static final String CACHE_SHOP_TYPE_VERSION_KEY = "cache:shopType:version";
+    //缓存key统一前缀
+    public static final String CACHE_KEY_PREFIX = "cache:";
+    //缓存失效广播频道
+    public static final String CACHE_INVALIDATE_CHANNEL = "cache:invalidate";
+    //缓存重建完成广播频道
+    public static final String CACHE_REBUILT_CHANNEL = "cache:rebuilt";
+    //布隆过滤器新增数据广播频道
+    public static final String CACHE_BLOOM_ADD_CHANNEL = "cache:bloom:add";
+    //布隆过滤器redis镜像key前缀
+    public static final String BLOOM_FILTER_KEY = "bloom:";
 
     //互斥锁key
     public static final String LOCK_SHOP_KEY = "lock:shop:";
@@ -35,8 +66,26 @@ public class RedisConstants {
     public static final String INCREMENT_KEY = "icr:";
 
     public static final String SECKILL_STOCK_KEY = "seckill:stock:";
+    //秒杀已下单用户集合key（一人一单）
+    public static final String SECKILL_ORDER_KEY = "seckill:order:";
+    //秒杀时间窗口key（hash：begin、end）
+    public static final String SECKILL_WINDOW_KEY = "seckill:window:";
+    //秒杀库存分片均衡中的标记（存在时表示有库存正在分片之间移动）
+    public static final String SECKILL_MOVING_KEY = "seckill:moving:";
+    //秒杀优惠券售罄广播频道
+    public static final String SECKILL_SOLD_OUT_CHANNEL = "seckill:soldout";
+    //秒杀订单消息队列（stream）
+    public static final String SECKILL_ORDER_STREAM_KEY = "stream:orders";
+    //秒杀订单死信队列（超过最大投递次数仍未处理成功的订单）
+    public static final String SECKILL_ORDER_DLQ_KEY = "stream:orders:dlq";
+    //秒杀订单消费者组
+    public static final String SECKILL_ORDER_GROUP = "order-group";
     public static final String BLOG_LIKED_KEY = "blog:liked:";
     public static final String FEED_KEY = "feed:";
     public static final String SHOP_GEO_KEY = "shop:geo:";
+    //店铺变更同步的游标（hash：已同步到的update_time、id）
+    public static final String SHOP_SYNC_CURSOR_KEY = "sync:shop:cursor";
+    //店铺变更同步的分布式锁名称（同一时刻只有一个节点同步）
+    public static final String SHOP_SYNC_LOCK_NAME = "sync:shop";
     public static final String USER_SIGN_KEY = "sign:";
 }
@@ -0,0 +1,336 @@
+package com.jgdp.utils;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.lang.UUID;
+import com.jgdp.config.SeckillProperties;
+import com.jgdp.entity.VoucherOrder;
+import com.jgdp.service.IVoucherOrderService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 秒杀订单消费者（stream模式）
+ * 秒杀脚本预扣减成功后把订单写入redis stream，这里通过消费者组异步写入数据库
+ * 1.消费者线程：xreadgroup读取新消息，凑满batch-size或等待batch-linger后组提交（一个事务批量写入订单、合并扣减库存），
+ *   写入成功后xack确认并xdel删除，stream的长度即为待处理的订单数；整批写入失败时逐条重新处理，隔离出有问题的订单
+ * 2.未确认消息恢复：消费者宕机或写入失败的消息会一直留在pending列表中，定时检查空闲时间超过min-idle的消息，
+ *   xclaim认领后重新处理；投递次数超过max-deliveries的消息转入死信队列，需要人工处理
+ * 3.订单写入是幂等的（订单已存在时直接确认），消息重复投递不会重复扣减库存
+ * 4.消费者名称每次启动随机生成：停止时删除本节点没有未确认消息的消费者，其他节点留下的（例如宕机）、
+ *   没有未确认消息并且空闲时间超过min-idle的消费者由定时任务删除，避免消费者组中的消费者越积越多
+ */
+@Slf4j
+@Component
+public class SeckillOrderConsumer {
+
+    @Autowired
+    private SeckillProperties seckillProperties;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private IVoucherOrderService voucherOrderService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    //当前节点的消费者名称前缀
+    private final String consumerPrefix = UUID.randomUUID().toString(true);
+    private ExecutorService executor;
+    private volatile boolean running;
+    //最近一次采样的待处理订单数、未确认消息数
+    private final AtomicLong lag = new AtomicLong();
+    private final AtomicLong pending = new AtomicLong();
+    private Counter processedCounter;
+    private Counter failedCounter;
+    private Counter deadLetterCounter;
+    private Timer delayTimer;
+    private DistributionSummary batchSizeSummary;
+    private Timer batchTimer;
+
+    @PostConstruct
+    public void init() {
+        if (!isEnabled()) {
+            return;
+        }
+        //监控指标：待处理订单数、未确认消息数、处理成功/失败/转入死信的次数、下单到入库的延迟
+        Gauge.builder("seckill.order.stream.lag", lag, AtomicLong::get).register(meterRegistry);
+        Gauge.builder("seckill.order.stream.pending", pending, AtomicLong::get).register(meterRegistry);
+        processedCounter = Counter.builder("seckill.order.stream.processed").register(meterRegistry);
+        failedCounter = Counter.builder("seckill.order.stream.failed").register(meterRegistry);
+        deadLetterCounter = Counter.builder("seckill.order.stream.dead-letter").register(meterRegistry);
+        delayTimer = Timer.builder("seckill.order.stream.delay").publishPercentiles(0.5, 0.99).register(meterRegistry);
+        //组提交：每批订单数、每批写入数据库的耗时
+        batchSizeSummary = DistributionSummary.builder("seckill.order.batch.size").register(meterRegistry);
+        batchTimer = Timer.builder("seckill.order.batch.latency").publishPercentiles(0.5, 0.99).register(meterRegistry);
+
+        //1.创建消费者组（stream不存在时一并创建）
+        createGroup();
+        //2.启动消费者线程
+        int consumers = seckillProperties.getStream().getConsumers();
+        running = true;
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(consumers,
+                r -> new Thread(r, "seckill-order-consumer-" + threadIndex.getAndIncrement()));
+        for (int i = 0; i < consumers; i++) {
+            String name = consumerPrefix + "-" + i;
+            executor.submit(() -> consume(name));
+        }
+    }
+
+    @PreDestroy
+    public void destroy() throws InterruptedException {
+        running = false;
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(seckillProperties.getStream().getBlock().toMillis() * 2, TimeUnit.MILLISECONDS);
+            //删除本节点没有未确认消息的消费者（有未确认消息的保留，由其他节点认领后再删除）
+            try {
+                removeConsumers(consumer -> consumer.consumerName().startsWith(consumerPrefix));
+            } catch (Exception e) {
+                log.warn("删除秒杀订单消费者失败", e);
+            }
+        }
+    }
+
+    private boolean isEnabled() {
+        return "stream".equals(seckillProperties.getMode());
+    }
+
+    private void createGroup() {
+        RedisSerializer<String> serializer = RedisSerializer.string();
+        try {
+            stringRedisTemplate.execute((RedisCallback<String>) connection -> connection.streamCommands().xGroupCreate(
+                    serializer.serialize(RedisConstants.SECKILL_ORDER_STREAM_KEY),
+                    RedisConstants.SECKILL_ORDER_GROUP, ReadOffset.from("0"), true));
+        } catch (Exception e) {
+            //消费者组已存在
+            if (e.getMessage() == null || !e.getMessage().contains("BUSYGROUP")) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * 消费者线程：循环读取新消息，凑批后组提交
+     *
+     * @param name 消费者名称
+     */
+    private void consume(String name) {
+        SeckillProperties.Stream config = seckillProperties.getStream();
+        Consumer consumer = Consumer.from(RedisConstants.SECKILL_ORDER_GROUP, name);
+        while (running) {
+            try {
+                //1.阻塞读取第一批消息 xreadgroup group order-group c1 count 100 block 2000 streams stream:orders >
+                List<MapRecord<String, Object, Object>> batch = new ArrayList<>(read(consumer, config.getBatchSize(), config.getBlock()));
+                if (batch.isEmpty()) {
+                    continue;
+                }
+                //2.未凑满时在batch-linger内继续读取
+                long deadline = System.nanoTime() + config.getBatchLinger().toNanos();
+                while (batch.size() < config.getBatchSize()) {
+                    long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    batch.addAll(read(consumer, config.getBatchSize() - batch.size(), Duration.ofMillis(remaining)));
+                }
+                //3.组提交
+                flush(batch);
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                log.error("读取秒杀订单消息失败", e);
+                sleep(config.getBlock().toMillis());
+            }
+        }
+    }
+
+    //StreamOperations.read只有可变参数的重载，只传一个StreamOffset<String>时会产生泛型数组创建的警告
+    @SuppressWarnings("unchecked")
+    private List<MapRecord<String, Object, Object>> read(Consumer consumer, int count, Duration block) {
+        List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().read(consumer,
+                StreamReadOptions.empty().count(count).block(block),
+                StreamOffset.create(RedisConstants.SECKILL_ORDER_STREAM_KEY, ReadOffset.lastConsumed()));
+        return records == null ? List.of() : records;
+    }
+
+    /**
+     * 批量写入一批订单消息，整批失败时逐条处理
+     *
+     * @param batch
+     */
+    private void flush(List<MapRecord<String, Object, Object>> batch) {
+        List<VoucherOrder> orders = batch.stream()
+                .map(record -> BeanUtil.fillBeanWithMap(record.getValue(), new VoucherOrder(), true))
+                .toList();
+        long start = System.nanoTime();
+        try {
+            voucherOrderService.saveSeckillOrders(orders);
+        } catch (Exception e) {
+            log.warn("秒杀订单批量写入失败, 逐条重新处理, 订单数:{}", batch.size(), e);
+            batch.forEach(this::handle);
+            return;
+        }
+        batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        batchSizeSummary.record(batch.size());
+        //确认并删除整批消息
+        RecordId[] ids = batch.stream().map(MapRecord::getId).toArray(RecordId[]::new);
+        ack(ids);
+        processedCounter.increment(batch.size());
+        long now = System.currentTimeMillis();
+        for (RecordId id : ids) {
+            delayTimer.record(Duration.ofMillis(Math.max(0, now - id.getTimestamp())));
+        }
+    }
+
+    /**
+     * 处理一条订单消息，写入失败时不确认，留在pending列表中等待恢复
+     *
+     * @param record
+     */
+    private void handle(MapRecord<String, Object, Object> record) {
+        VoucherOrder voucherOrder = BeanUtil.fillBeanWithMap(record.getValue(), new VoucherOrder(), true);
+        try {
+            if (!voucherOrderService.saveSeckillOrder(voucherOrder)) {
+                //数据库库存不足，说明redis与数据库的库存不一致，重试也不会成功
+                deadLetter(record, "数据库库存不足");
+                return;
+            }
+        } catch (Exception e) {
+            failedCounter.increment();
+            log.error("秒杀订单写入失败, 消息id:{}, 订单id:{}", record.getId(), voucherOrder.getId(), e);
+            return;
+        }
+        ack(record.getId());
+        processedCounter.increment();
+        delayTimer.record(Duration.ofMillis(Math.max(0, System.currentTimeMillis() - record.getId().getTimestamp())));
+    }
+
+    /**
+     * 定时检查未确认的消息：认领空闲时间过长的消息重新处理，投递次数过多的转入死信队列
+     */
+    @Scheduled(fixedDelayString = "${jgdp.seckill.stream.recovery-interval:10s}")
+    public void recover() {
+        if (!running) {
+            return;
+        }
+        SeckillProperties.Stream config = seckillProperties.getStream();
+        try {
+            //1.采样待处理订单数和未确认消息数
+            Long size = stringRedisTemplate.opsForStream().size(RedisConstants.SECKILL_ORDER_STREAM_KEY);
+            lag.set(size == null ? 0 : size);
+            PendingMessagesSummary summary = stringRedisTemplate.opsForStream()
+                    .pending(RedisConstants.SECKILL_ORDER_STREAM_KEY, RedisConstants.SECKILL_ORDER_GROUP);
+            pending.set(summary == null ? 0 : summary.getTotalPendingMessages());
+            //2.删除其他节点留下的空闲消费者：存活的消费者每个block周期都会读取一次，空闲时间不会超过min-idle
+            removeConsumers(consumer -> !consumer.consumerName().startsWith(consumerPrefix)
+                    && consumer.idleTime().compareTo(config.getMinIdle()) > 0);
+            if (pending.get() == 0) {
+                return;
+            }
+
+            //3.查询未确认的消息
+            PendingMessages messages = stringRedisTemplate.opsForStream().pending(RedisConstants.SECKILL_ORDER_STREAM_KEY,
+                    RedisConstants.SECKILL_ORDER_GROUP, Range.unbounded(), config.getRecoveryBatchSize());
+            String recoverer = consumerPrefix + "-recovery";
+            for (PendingMessage message : messages) {
+                if (message.getElapsedTimeSinceLastDelivery().compareTo(config.getMinIdle()) < 0) {
+                    continue;
+                }
+                //4.认领消息（其他节点已经认领的消息空闲时间会被重置，这里认领不到）
+                List<MapRecord<String, Object, Object>> claimed = stringRedisTemplate.opsForStream().claim(
+                        RedisConstants.SECKILL_ORDER_STREAM_KEY, RedisConstants.SECKILL_ORDER_GROUP,
+                        recoverer, config.getMinIdle(), message.getId());
+                for (MapRecord<String, Object, Object> record : claimed) {
+                    //5.投递次数过多转入死信队列，否则重新处理
+                    if (message.getTotalDeliveryCount() >= config.getMaxDeliveries()) {
+                        deadLetter(record, "超过最大投递次数:" + message.getTotalDeliveryCount());
+                    } else {
+                        handle(record);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.error("恢复未确认的秒杀订单消息失败", e);
+        }
+    }
+
+    /**
+     * 删除满足条件、并且没有未确认消息的消费者（删除有未确认消息的消费者会丢失这些消息的pending记录）
+     *
+     * @param filter
+     */
+    private void removeConsumers(Predicate<StreamInfo.XInfoConsumer> filter) {
+        StreamInfo.XInfoConsumers consumers = stringRedisTemplate.opsForStream()
+                .consumers(RedisConstants.SECKILL_ORDER_STREAM_KEY, RedisConstants.SECKILL_ORDER_GROUP);
+        for (StreamInfo.XInfoConsumer consumer : consumers) {
+            if (consumer.pendingCount() == 0 && filter.test(consumer)) {
+                stringRedisTemplate.opsForStream().deleteConsumer(RedisConstants.SECKILL_ORDER_STREAM_KEY,
+                        Consumer.from(RedisConstants.SECKILL_ORDER_GROUP, consumer.consumerName()));
+                log.info("删除秒杀订单消费者:{}", consumer.consumerName());
+            }
+        }
+    }
+
+    private void deadLetter(MapRecord<String, Object, Object> record, String reason) {
+        Map<Object, Object> value = new HashMap<>(record.getValue());
+        value.put("sourceId", record.getId().getValue());
+        value.put("reason", reason);
+        stringRedisTemplate.opsForStream().add(StreamRecords.newRecord()
+                .in(RedisConstants.SECKILL_ORDER_DLQ_KEY).ofMap(value));
+        ack(record.getId());
+        deadLetterCounter.increment();
+        log.warn("秒杀订单转入死信队列, 消息id:{}, 原因:{}", record.getId(), reason);
+    }
+
+    private void ack(RecordId... id) {
+        stringRedisTemplate.opsForStream().acknowledge(RedisConstants.SECKILL_ORDER_STREAM_KEY,
+                RedisConstants.SECKILL_ORDER_GROUP, id);
+        stringRedisTemplate.opsForStream().delete(RedisConstants.SECKILL_ORDER_STREAM_KEY, id);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,579 @@
+package com.jgdp.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.jgdp.config.SeckillProperties;
+import com.jgdp.entity.SeckillVoucher;
+import com.jgdp.entity.VoucherOrder;
+import com.jgdp.mapper.SeckillVoucherMapper;
+import com.jgdp.mapper.VoucherOrderMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 秒杀库存（redis）
+ * 库存、已下单用户集合和秒杀时间窗口保存在redis中，由lua脚本原子地完成资格判断和预扣减，请求线程不需要访问数据库
+ * 同一个优惠券的key使用相同的hash tag（seckill:stock:{优惠券id}等），redis集群中位于同一个slot；
+ * 订单消息队列是全局的key，与优惠券的key不在同一个slot，stream模式下未分片的优惠券在脚本中写入订单消息，
+ * 只能使用单节点（或主从）redis，redis集群需要为stream模式的热门优惠券配置分片（分片在脚本之外写入订单消息）
+ * 1.新增秒杀券时（事务提交后）写入库存和时间窗口
+ * 2.库存key不存在时（例如redis数据丢失、新增秒杀券之前已有的数据）从数据库加载；
+ *   加hash tag之前写入的库存key（seckill:stock:优惠券id）仍然存在时从旧key迁移，不从数据库加载
+ * 3.订单写入失败时回滚预扣减
+ * 4.传入订单消息队列时，预扣减成功后由脚本写入订单消息
+ * 5.超热门优惠券可以配置库存分片：库存和已下单用户集合都按分片拆分（seckill:stock:{优惠券id:分片序号}、
+ *   seckill:order:{优惠券id:分片序号}，不同分片的hash tag不同，分布在不同的slot上），用户固定属于一个分片，
+ *   在所属分片上由一个脚本完成预占（一人一单）和扣减；所属分片库存为0时只从其他分片扣减库存，都扣减失败时撤销预占。
+ *   每次请求只访问所属分片（库存不足时才探测其他分片），单个优惠券的扣减可以分散到多个redis节点上。
+ *   已经按单个key初始化的优惠券配置分片后，启动时把redis中的库存和已下单用户迁移到分片（不从数据库重新加载，
+ *   stream模式下数据库库存落后于redis），迁移失败时拒绝启动；迁移后单个库存key置为0，不能再取消分片。
+ *   不支持修改已分片优惠券的分片数：用户所属的分片会变化，原分片集合中的下单记录查不到，同一用户可以再买一次。
+ *   秒杀时间由调用方在本地判断；定时把库存较多的分片的余量移到空分片，减少秒杀后期的分片探测次数
+ */
+@Slf4j
+@Component
+public class SeckillStockManager {
+
+    //预扣减结果
+    public static final int SUCCESS = 0;
+    //成功，且扣减后库存为0（抢到了最后一件）
+    public static final int SUCCESS_SOLD_OUT = 5;
+    public static final int NO_STOCK = 1;
+    public static final int REPEAT = 2;
+    public static final int NOT_STARTED = 3;
+    public static final int ENDED = 4;
+    public static final int NOT_LOADED = -1;
+    //库存不足，但有库存正在分片之间移动，不能判断为售罄
+    public static final int NO_STOCK_MOVING = 6;
+    //分片脚本的返回值（大于等于0表示扣减成功后分片的剩余库存）：分片未初始化、重复下单、所属分片库存为0
+    private static final long SHARD_MISSING = -1;
+    private static final long SHARD_REPEAT = -2;
+    private static final long SHARD_EMPTY = -3;
+    //分片均衡锁的过期时间（秒）
+    private static final long REBALANCE_LOCK_TTL = 10;
+    //库存迁移锁的过期时间（秒），以及等待其他节点完成迁移的次数和间隔（毫秒）
+    private static final long MIGRATE_LOCK_TTL = 30;
+    private static final int MIGRATE_WAIT_TIMES = 100;
+    private static final long MIGRATE_WAIT_INTERVAL = 100;
+
+    private static final DefaultRedisScript<Long> SECKILL_SCRIPT;
+    private static final DefaultRedisScript<Long> ROLLBACK_SCRIPT;
+    private static final DefaultRedisScript<Long> SHARD_TAKE_SCRIPT;
+    private static final DefaultRedisScript<Long> SHARD_RESERVE_SCRIPT;
+    private static final DefaultRedisScript<Long> DRAIN_SCRIPT;
+    static {
+        SECKILL_SCRIPT = new DefaultRedisScript<>();
+        SECKILL_SCRIPT.setLocation(new ClassPathResource("seckill.lua"));
+        SECKILL_SCRIPT.setResultType(Long.class);
+        ROLLBACK_SCRIPT = new DefaultRedisScript<>();
+        ROLLBACK_SCRIPT.setLocation(new ClassPathResource("seckill_rollback.lua"));
+        ROLLBACK_SCRIPT.setResultType(Long.class);
+        SHARD_TAKE_SCRIPT = new DefaultRedisScript<>();
+        SHARD_TAKE_SCRIPT.setLocation(new ClassPathResource("seckill_shard_take.lua"));
+        SHARD_TAKE_SCRIPT.setResultType(Long.class);
+        SHARD_RESERVE_SCRIPT = new DefaultRedisScript<>();
+        SHARD_RESERVE_SCRIPT.setLocation(new ClassPathResource("seckill_shard_reserve.lua"));
+        SHARD_RESERVE_SCRIPT.setResultType(Long.class);
+        DRAIN_SCRIPT = new DefaultRedisScript<>();
+        DRAIN_SCRIPT.setLocation(new ClassPathResource("seckill_stock_drain.lua"));
+        DRAIN_SCRIPT.setResultType(Long.class);
+    }
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private SeckillVoucherMapper seckillVoucherMapper;
+    @Autowired
+    private VoucherOrderMapper voucherOrderMapper;
+    @Autowired
+    private SeckillProperties seckillProperties;
+
+    /**
+     * 已配置分片、但还在使用单个库存key（或加hash tag之前的库存key）的优惠券，启动时把库存迁移到分片，迁移失败时拒绝启动
+     */
+    @PostConstruct
+    public void init() {
+        seckillProperties.getSharding().getVouchers().forEach((voucherId, shards) -> {
+            if (shards > 1) {
+                migrate(voucherId, shards);
+            }
+        });
+    }
+
+    /**
+     * 判断秒杀资格并预扣减库存
+     *
+     * @param voucherId
+     * @param userId
+     * @param orderId 预先生成的订单id
+     * @param streamKey 订单消息队列，null表示不发送订单消息
+     * @return 预扣减结果
+     */
+    public int tryDeduct(Long voucherId, Long userId, long orderId, String streamKey) {
+        int result = deduct(voucherId, userId, orderId, streamKey);
+        if (result != NOT_LOADED) {
+            return result;
+        }
+        //库存未初始化，从数据库加载后重试一次
+        if (!load(voucherId)) {
+            return NO_STOCK;
+        }
+        result = deduct(voucherId, userId, orderId, streamKey);
+        return result == NOT_LOADED ? NO_STOCK : result;
+    }
+
+    /**
+     * 回滚预扣减：归还库存并移除下单记录
+     *
+     * @param voucherId
+     * @param userId
+     */
+    public void rollback(Long voucherId, Long userId) {
+        int shards = shardsOf(voucherId);
+        if (shards > 1) {
+            //撤销预占成功才归还库存（归还到用户所属的分片）
+            int home = homeShard(userId, shards);
+            Long removed = stringRedisTemplate.opsForSet().remove(buyerKey(voucherId, home), userId.toString());
+            if (removed != null && removed > 0) {
+                stringRedisTemplate.opsForValue().increment(shardKey(voucherId, home));
+            }
+            return;
+        }
+        stringRedisTemplate.execute(ROLLBACK_SCRIPT,
+                Arrays.asList(stockKey(voucherId), orderKey(voucherId)),
+                userId.toString());
+    }
+
+    /**
+     * 写入秒杀券的库存和时间窗口，当前存在事务时推迟到事务提交之后（事务回滚则不写入）
+     *
+     * @param seckillVoucher
+     */
+    public void seed(SeckillVoucher seckillVoucher) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            seedNow(seckillVoucher, List.of());
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                seedNow(seckillVoucher, List.of());
+            }
+        });
+    }
+
+    private int deduct(Long voucherId, Long userId, long orderId, String streamKey) {
+        int shards = shardsOf(voucherId);
+        if (shards > 1) {
+            return deductSharded(voucherId, userId, orderId, streamKey, shards);
+        }
+        List<String> keys = new ArrayList<>(4);
+        keys.add(stockKey(voucherId));
+        keys.add(orderKey(voucherId));
+        keys.add(windowKey(voucherId));
+        if (streamKey != null) {
+            keys.add(streamKey);
+        }
+        Long result = stringRedisTemplate.execute(SECKILL_SCRIPT, keys,
+                userId.toString(), String.valueOf(System.currentTimeMillis()),
+                String.valueOf(orderId), voucherId.toString());
+        return result == null ? NOT_LOADED : result.intValue();
+    }
+
+    /**
+     * 分片扣减库存
+     *
+     * @param voucherId
+     * @param userId
+     * @param orderId
+     * @param streamKey
+     * @param shards 分片数
+     * @return 预扣减结果
+     */
+    private int deductSharded(Long voucherId, Long userId, long orderId, String streamKey, int shards) {
+        //1.在用户所属的分片上预占一人一单资格并扣减库存
+        int home = homeShard(userId, shards);
+        String buyerKey = buyerKey(voucherId, home);
+        Long left = stringRedisTemplate.execute(SHARD_RESERVE_SCRIPT,
+                Arrays.asList(shardKey(voucherId, home), buyerKey), userId.toString());
+        if (left == null || left == SHARD_MISSING) {
+            return NOT_LOADED;
+        }
+        if (left == SHARD_REPEAT) {
+            return REPEAT;
+        }
+        //2.所属分片库存为0，依次从其他分片扣减（只扣减库存，预占仍在所属分片上）
+        int deducted = home;
+        if (left == SHARD_EMPTY) {
+            deducted = -1;
+            for (int i = 1; i < shards; i++) {
+                int shard = (home + i) % shards;
+                left = take(voucherId, shard, 1, 0);
+                if (left == null || left == SHARD_MISSING) {
+                    //分片未初始化，撤销预占后由调用方加载库存
+                    stringRedisTemplate.opsForSet().remove(buyerKey, userId.toString());
+                    return NOT_LOADED;
+                }
+                if (left >= 0) {
+                    deducted = shard;
+                    break;
+                }
+            }
+            //3.所有分片都没有库存，撤销预占（均衡中移出的库存还没加到目标分片时不算售罄）
+            if (deducted < 0) {
+                stringRedisTemplate.opsForSet().remove(buyerKey, userId.toString());
+                return moving(voucherId) ? NO_STOCK_MOVING : NO_STOCK;
+            }
+        }
+        //4.发送订单消息，失败时归还库存并撤销预占
+        if (streamKey != null) {
+            try {
+                Map<String, String> order = new HashMap<>();
+                order.put("userId", userId.toString());
+                order.put("voucherId", voucherId.toString());
+                order.put("id", String.valueOf(orderId));
+                stringRedisTemplate.opsForStream().add(streamKey, order);
+            } catch (RuntimeException e) {
+                stringRedisTemplate.opsForValue().increment(shardKey(voucherId, deducted));
+                stringRedisTemplate.opsForSet().remove(buyerKey, userId.toString());
+                throw e;
+            }
+        }
+        //5.扣到0的分片才检查其他分片，所有分片都为0表示抢到了最后一件
+        return left == 0 && soldOut(voucherId, shards, deducted) ? SUCCESS_SOLD_OUT : SUCCESS;
+    }
+
+    /**
+     * 判断除指定分片（已扣到0）之外的分片是否都没有库存
+     * 有库存正在分片之间移动时不算售罄
+     *
+     * @param voucherId
+     * @param shards 分片数
+     * @param except 已扣到0的分片
+     * @return 是否已售罄
+     */
+    private boolean soldOut(Long voucherId, int shards, int except) {
+        if (moving(voucherId)) {
+            return false;
+        }
+        for (int i = 0; i < shards; i++) {
+            if (i == except) {
+                continue;
+            }
+            String value = stringRedisTemplate.opsForValue().get(shardKey(voucherId, i));
+            if (value == null || Long.parseLong(value) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 定时均衡分片库存：把余量较多的分片的库存移到空分片
+     * 源分片移出后至少保留均衡目标数量的库存（由脚本原子判断）；移出到加到空分片之间所有分片可能都为0，
+     * 移动期间设置标记，扣减时据此不判断为售罄
+     */
+    @Scheduled(fixedDelayString = "${jgdp.seckill.sharding.rebalance-interval:1s}")
+    public void rebalance() {
+        Map<Long, Integer> vouchers = seckillProperties.getSharding().getVouchers();
+        if (vouchers.isEmpty()) {
+            return;
+        }
+        SimpleRedisLock lock = new SimpleRedisLock(stringRedisTemplate, "seckill:rebalance");
+        if (!lock.tryLock(REBALANCE_LOCK_TTL)) {
+            return;
+        }
+        try {
+            vouchers.forEach((voucherId, shards) -> {
+                if (shards > 1) {
+                    rebalance(voucherId, shards);
+                }
+            });
+        } catch (Exception e) {
+            log.error("秒杀库存分片均衡失败", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void rebalance(Long voucherId, int shards) {
+        //1.读取各分片库存
+        long[] stocks = new long[shards];
+        long total = 0;
+        for (int i = 0; i < shards; i++) {
+            String value = stringRedisTemplate.opsForValue().get(shardKey(voucherId, i));
+            if (value == null) {
+                //未初始化
+                return;
+            }
+            stocks[i] = Math.max(0, Long.parseLong(value));
+            total += stocks[i];
+        }
+        //2.只在有空分片、并且其他分片还有余量时移动
+        long target = Math.max(1, total / shards);
+        for (int to = 0; to < shards; to++) {
+            if (stocks[to] > 0) {
+                continue;
+            }
+            for (int from = 0; from < shards; from++) {
+                long surplus = stocks[from] - target;
+                if (surplus <= 0) {
+                    continue;
+                }
+                //3.设置移动标记后从源分片扣减（扣减后不足均衡目标时失败，快照过期也不会把源分片移空），成功后加到空分片
+                long count = Math.min(surplus, target);
+                String movingKey = RedisConstants.SECKILL_MOVING_KEY + voucherId;
+                stringRedisTemplate.opsForValue().set(movingKey, String.valueOf(count), REBALANCE_LOCK_TTL, TimeUnit.SECONDS);
+                try {
+                    Long left = take(voucherId, from, count, target);
+                    if (left != null && left >= 0) {
+                        stringRedisTemplate.opsForValue().increment(shardKey(voucherId, to), count);
+                        stocks[from] = left;
+                        stocks[to] += count;
+                        log.debug("秒杀库存分片均衡, voucherId:{}, {} -> {}, 数量:{}", voucherId, from, to, count);
+                        break;
+                    }
+                } finally {
+                    stringRedisTemplate.delete(movingKey);
+                }
+            }
+        }
+    }
+
+    private Long take(Long voucherId, int shard, long count, long keep) {
+        return stringRedisTemplate.execute(SHARD_TAKE_SCRIPT,
+                Collections.singletonList(shardKey(voucherId, shard)), String.valueOf(count), String.valueOf(keep));
+    }
+
+    private boolean moving(Long voucherId) {
+        return Boolean.TRUE.equals(stringRedisTemplate.hasKey(RedisConstants.SECKILL_MOVING_KEY + voucherId));
+    }
+
+    private int shardsOf(Long voucherId) {
+        Integer shards = seckillProperties.getSharding().getVouchers().get(voucherId);
+        return shards == null ? 1 : shards;
+    }
+
+    private static int homeShard(Long userId, int shards) {
+        return Math.floorMod(Long.hashCode(userId * 0x9E3779B97F4A7C15L), shards);
+    }
+
+    /**
+     * 未分片的优惠券的库存、已下单用户集合、时间窗口key，使用相同的hash tag（{优惠券id}），
+     * 在redis集群中也位于同一个slot，可以在一个脚本中访问
+     */
+    private static String stockKey(Long voucherId) {
+        return RedisConstants.SECKILL_STOCK_KEY + "{" + voucherId + "}";
+    }
+
+    private static String orderKey(Long voucherId) {
+        return RedisConstants.SECKILL_ORDER_KEY + "{" + voucherId + "}";
+    }
+
+    private static String windowKey(Long voucherId) {
+        return RedisConstants.SECKILL_WINDOW_KEY + "{" + voucherId + "}";
+    }
+
+    private static String shardKey(Long voucherId, int shard) {
+        return RedisConstants.SECKILL_STOCK_KEY + "{" + voucherId + ":" + shard + "}";
+    }
+
+    /**
+     * 分片的已下单用户集合，与分片库存key使用相同的hash tag
+     */
+    private static String buyerKey(Long voucherId, int shard) {
+        return RedisConstants.SECKILL_ORDER_KEY + "{" + voucherId + ":" + shard + "}";
+    }
+
+    /**
+     * 从数据库加载秒杀券的库存、时间窗口和已下单用户
+     * redis中还有旧的库存key时（分片前的单个库存key、加hash tag之前的库存key）从旧key迁移库存，不从数据库加载
+     *
+     * @param voucherId
+     * @return 秒杀券是否存在
+     */
+    private boolean load(Long voucherId) {
+        SeckillVoucher seckillVoucher = seckillVoucherMapper.selectById(voucherId);
+        if (seckillVoucher == null) {
+            return false;
+        }
+        if (migrate(voucherId, shardsOf(voucherId))) {
+            writeWindow(seckillVoucher);
+            return true;
+        }
+        List<String> buyers = voucherOrderMapper.selectList(new QueryWrapper<VoucherOrder>()
+                        .select("user_id").eq("voucher_id", voucherId))
+                .stream().map(order -> order.getUserId().toString()).toList();
+        seedNow(seckillVoucher, buyers);
+        return true;
+    }
+
+    private void seedNow(SeckillVoucher seckillVoucher, List<String> buyers) {
+        Long voucherId = seckillVoucher.getVoucherId();
+        int shards = shardsOf(voucherId);
+        //1.写入已下单用户和时间窗口（分片时已下单用户写入各自所属分片的集合）
+        if (shards > 1) {
+            addBuyers(voucherId, shards, buyers);
+        } else if (!buyers.isEmpty()) {
+            stringRedisTemplate.opsForSet().add(orderKey(voucherId), buyers.toArray(new String[0]));
+        }
+        writeWindow(seckillVoucher);
+        //2.最后写入库存（库存key存在即表示已初始化），已存在时不覆盖，避免多个节点同时加载时覆盖已扣减的库存
+        if (shards > 1) {
+            writeShards(voucherId, shards, seckillVoucher.getStock(), false);
+            log.debug("秒杀券{}库存初始化, 库存:{}, 分片数:{}", voucherId, seckillVoucher.getStock(), shards);
+            return;
+        }
+        Boolean loaded = stringRedisTemplate.opsForValue()
+                .setIfAbsent(stockKey(voucherId), seckillVoucher.getStock().toString());
+        log.debug("秒杀券{}库存初始化, 库存:{}, 写入:{}", voucherId, seckillVoucher.getStock(), loaded);
+    }
+
+    private void writeWindow(SeckillVoucher seckillVoucher) {
+        Map<String, String> window = new HashMap<>();
+        window.put("begin", String.valueOf(toMillis(seckillVoucher.getBeginTime())));
+        window.put("end", String.valueOf(toMillis(seckillVoucher.getEndTime())));
+        stringRedisTemplate.opsForHash().putAll(windowKey(seckillVoucher.getVoucherId()), window);
+    }
+
+    /**
+     * 从旧的库存key迁移库存和已下单用户
+     * 分片时依次尝试单个库存key、加hash tag之前的库存key，未分片时只尝试加hash tag之前的库存key
+     *
+     * @param voucherId
+     * @param shards 分片数
+     * @return 是否存在旧的库存key（存在时库存已经迁移，不能再从数据库加载）
+     */
+    private boolean migrate(Long voucherId, int shards) {
+        if (shards > 1 && migrate(voucherId, shards, stockKey(voucherId), orderKey(voucherId))) {
+            return true;
+        }
+        return migrate(voucherId, shards,
+                RedisConstants.SECKILL_STOCK_KEY + voucherId, RedisConstants.SECKILL_ORDER_KEY + voucherId);
+    }
+
+    /**
+     * 把旧的库存key中的库存和已下单用户迁移到当前的key（分片或单个库存key）
+     * 只有一个节点能取到旧key中的库存（取出后置为0），其他节点等待迁移完成
+     *
+     * @param voucherId
+     * @param shards 分片数
+     * @param fromStockKey 旧的库存key
+     * @param fromOrderKey 旧的已下单用户集合key
+     * @return 是否存在旧的库存key
+     */
+    private boolean migrate(Long voucherId, int shards, String fromStockKey, String fromOrderKey) {
+        if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(fromStockKey))) {
+            return false;
+        }
+        if (migrated(voucherId, shards)) {
+            return true;
+        }
+        SimpleRedisLock lock = new SimpleRedisLock(stringRedisTemplate, "seckill:migrate:" + voucherId);
+        if (!lock.tryLock(MIGRATE_LOCK_TTL)) {
+            //其他节点正在迁移，等待迁移完成
+            for (int i = 0; i < MIGRATE_WAIT_TIMES && !migrated(voucherId, shards); i++) {
+                sleep(MIGRATE_WAIT_INTERVAL);
+            }
+            if (!migrated(voucherId, shards)) {
+                throw new IllegalStateException("秒杀券" + voucherId + "库存迁移未完成");
+            }
+            return true;
+        }
+        try {
+            if (migrated(voucherId, shards)) {
+                return true;
+            }
+            //1.取出旧key中的库存（中途失败时按日志中的库存人工恢复）
+            Long stock = stringRedisTemplate.execute(DRAIN_SCRIPT, Collections.singletonList(fromStockKey));
+            stock = stock == null ? 0 : Math.max(0, stock);
+            log.warn("秒杀券{}库存迁移, 原库存key:{}, 库存:{}, 分片数:{}", voucherId, fromStockKey, stock, shards);
+            //2.写入已下单用户（分片时写入各自所属分片的集合）
+            Set<String> buyers = stringRedisTemplate.opsForSet().members(fromOrderKey);
+            if (buyers == null) {
+                buyers = Set.of();
+            }
+            if (shards > 1) {
+                addBuyers(voucherId, shards, buyers);
+                //3.写入分片库存（覆盖迁移中断时残留的分片）
+                writeShards(voucherId, shards, stock, true);
+                return true;
+            }
+            if (!buyers.isEmpty()) {
+                stringRedisTemplate.opsForSet().add(orderKey(voucherId), buyers.toArray(new String[0]));
+            }
+            stringRedisTemplate.opsForValue().set(stockKey(voucherId), String.valueOf(stock));
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 判断是否已经迁移完成：分片0最后写入，存在即表示已经迁移完成；未分片时库存key最后写入
+     */
+    private boolean migrated(Long voucherId, int shards) {
+        String key = shards > 1 ? shardKey(voucherId, 0) : stockKey(voucherId);
+        return Boolean.TRUE.equals(stringRedisTemplate.hasKey(key));
+    }
+
+    private void addBuyers(Long voucherId, int shards, Collection<String> buyers) {
+        buyers.stream()
+                .collect(Collectors.groupingBy(userId -> homeShard(Long.valueOf(userId), shards)))
+                .forEach((shard, users) -> stringRedisTemplate.opsForSet()
+                        .add(buyerKey(voucherId, shard), users.toArray(new String[0])));
+    }
+
+    /**
+     * 写入分片库存：库存平均拆分，余数分给前几个分片；分片0最后写入
+     *
+     * @param voucherId
+     * @param shards 分片数
+     * @param stock 总库存
+     * @param overwrite 是否覆盖已存在的分片
+     */
+    private void writeShards(Long voucherId, int shards, long stock, boolean overwrite) {
+        for (int i = shards - 1; i >= 0; i--) {
+            String shardStock = String.valueOf(stock / shards + (i < stock % shards ? 1 : 0));
+            if (overwrite) {
+                stringRedisTemplate.opsForValue().set(shardKey(voucherId, i), shardStock);
+            } else {
+                stringRedisTemplate.opsForValue().setIfAbsent(shardKey(voucherId, i), shardStock);
+            }
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,125 @@
+package com.jgdp.utils;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LFUCache;
+import com.jgdp.config.SeckillProperties;
+import com.jgdp.entity.SeckillVoucher;
+import com.jgdp.mapper.SeckillVoucherMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 秒杀优惠券本地缓存
+ * 1.优惠券信息（秒杀时间）缓存在本地，秒杀开始前、结束后的请求在本地直接拒绝
+ * 2.售罄标记：某个节点发现库存扣完后在本地标记并通过redis发布订阅通知所有节点，之后的请求不再访问redis和数据库；
+ *   预扣减回滚归还库存时清除标记。新启动的节点没有标记，第一次发现库存不足时再标记。
+ *   发布订阅不保证送达，标记在voucher-cache-ttl后过期，过期后的第一个请求重新到redis确认库存，
+ *   丢失了清除消息的节点最多在这段时间内误拒请求
+ * 3.不存在的优惠券id同样缓存voucher-cache-ttl，重复请求不再查询数据库；
+ *   在不存在时已经被请求过的id，新增为秒杀券后最多在这段时间内被拒绝
+ */
+@Slf4j
+@Component
+public class SeckillVoucherCache {
+
+    //售罄广播消息：标记售罄、清除售罄
+    private static final String SET = "set:";
+    private static final String CLEAR = "clear:";
+    //不存在的优惠券的占位
+    private static final SeckillVoucher ABSENT = new SeckillVoucher();
+
+    @Autowired
+    private SeckillProperties seckillProperties;
+    @Autowired
+    private SeckillVoucherMapper seckillVoucherMapper;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+    private LFUCache<Long, SeckillVoucher> vouchers;
+    //已售罄的优惠券id -> 标记的过期时间（毫秒时间戳）
+    private final Map<Long, Long> soldOut = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        vouchers = CacheUtil.newLFUCache(seckillProperties.getVoucherCacheSize(),
+                seckillProperties.getVoucherCacheTtl().toMillis());
+        //订阅其他节点的售罄消息
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String body = new String(message.getBody(), StandardCharsets.UTF_8);
+            if (body.startsWith(SET)) {
+                soldOut.put(Long.valueOf(body.substring(SET.length())), flagExpireAt());
+            } else if (body.startsWith(CLEAR)) {
+                soldOut.remove(Long.valueOf(body.substring(CLEAR.length())));
+            }
+        }, new ChannelTopic(RedisConstants.SECKILL_SOLD_OUT_CHANNEL));
+    }
+
+    /**
+     * 查询秒杀优惠券信息，本地缓存未命中时查询数据库，不存在的id也缓存
+     *
+     * @param voucherId
+     * @return 不存在时返回null
+     */
+    public SeckillVoucher get(Long voucherId) {
+        //1.查询本地缓存（包括不存在的占位）
+        SeckillVoucher seckillVoucher = vouchers.get(voucherId);
+        if (seckillVoucher != null) {
+            return seckillVoucher == ABSENT ? null : seckillVoucher;
+        }
+        //2.查询数据库，不存在时缓存占位
+        seckillVoucher = seckillVoucherMapper.selectById(voucherId);
+        vouchers.put(voucherId, seckillVoucher == null ? ABSENT : seckillVoucher);
+        return seckillVoucher;
+    }
+
+    public boolean isSoldOut(Long voucherId) {
+        Long expireAt = soldOut.get(voucherId);
+        if (expireAt == null) {
+            return false;
+        }
+        if (expireAt < System.currentTimeMillis()) {
+            //标记过期，交给redis重新确认
+            soldOut.remove(voucherId, expireAt);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 标记售罄并通知所有节点（本节点已经标记过时只延长标记的有效期，不再重复广播）
+     *
+     * @param voucherId
+     */
+    public void markSoldOut(Long voucherId) {
+        if (soldOut.put(voucherId, flagExpireAt()) == null) {
+            stringRedisTemplate.convertAndSend(RedisConstants.SECKILL_SOLD_OUT_CHANNEL, SET + voucherId);
+            log.info("秒杀优惠券已售罄, voucherId:{}", voucherId);
+        }
+    }
+
+    /**
+     * 清除售罄标记并通知所有节点（其他节点可能已经标记，总是广播）
+     *
+     * @param voucherId
+     */
+    public void clearSoldOut(Long voucherId) {
+        soldOut.remove(voucherId);
+        stringRedisTemplate.convertAndSend(RedisConstants.SECKILL_SOLD_OUT_CHANNEL, CLEAR + voucherId);
+    }
+
+    private long flagExpireAt() {
+        return System.currentTimeMillis() + seckillProperties.getVoucherCacheTtl().toMillis();
+    }
+}
@@ -0,0 +1,229 @@
+package com.jgdp.utils;
+
+import com.jgdp.config.CacheProperties;
+import com.jgdp.entity.Shop;
+import com.jgdp.entity.ShopType;
+import com.jgdp.mapper.ShopMapper;
+import com.jgdp.service.IShopTypeService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 店铺变更同步
+ * 批处理任务、手工SQL等绕过应用的修改不会删除缓存，这里按tb_shop的(update_time, id)游标增量查询修改过的店铺，
+ * 删除对应的店铺缓存和响应缓存，更新店铺GEO数据并写入布隆过滤器
+ * 1.单节点执行：通过分布式锁保证同一时刻只有一个节点同步
+ * 2.可恢复：每处理完一批就把游标(update_time, id)保存到redis，重启或切换节点后从游标继续，
+ *   同一时间戳的行再多也能分多次同步完
+ * 3.回扫：每次额外回扫按数据库时间计算的最近一段时间内、排在游标之前的行，修改时间早于游标但提交较晚的行也能被同步到
+ *   （重复处理是幂等的，超出回扫时间的行不再重复处理）；修改时间与提交时间相差超过回扫时间的事务会被永久漏掉，
+ *   只能等缓存过期
+ * 物理删除的行无法通过update_time发现，仍然依赖缓存过期
+ */
+@Slf4j
+@Component
+public class ShopChangeSync {
+
+    @Autowired
+    private CacheProperties cacheProperties;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    @Autowired
+    private ShopMapper shopMapper;
+    @Autowired
+    private IShopTypeService shopTypeService;
+    @Autowired
+    private CacheInvalidator cacheInvalidator;
+    @Autowired
+    private BloomFilterRegistry bloomFilterRegistry;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    //同步延迟（秒）：已追上时为0，否则为数据库当前时间与游标时间之差
+    private final AtomicLong lagSeconds = new AtomicLong();
+    private Counter syncedCounter;
+
+    /**
+     * 同步游标：已处理到的(update_time, id)
+     */
+    private record Cursor(LocalDateTime time, long id) {
+    }
+
+    @PostConstruct
+    public void init() {
+        //监控指标：同步延迟（秒）、已同步的行数
+        Gauge.builder("cache.sync.shop.lag", lagSeconds, AtomicLong::get).register(meterRegistry);
+        syncedCounter = Counter.builder("cache.sync.shop.rows").register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${jgdp.cache.change-sync.interval:5s}")
+    public void sync() {
+        CacheProperties.ChangeSync config = cacheProperties.getChangeSync();
+        if (!config.isEnabled()) {
+            return;
+        }
+        //1.获取锁，失败说明其他节点正在同步
+        SimpleRedisLock lock = new SimpleRedisLock(stringRedisTemplate, RedisConstants.SHOP_SYNC_LOCK_NAME);
+        if (!lock.tryLock(config.getLockTtl())) {
+            return;
+        }
+        try {
+            syncChanges(config);
+        } catch (Exception e) {
+            log.error("店铺变更同步失败", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void syncChanges(CacheProperties.ChangeSync config) {
+        //2.读取游标，第一次执行时从当前最新的修改时间开始（已有的数据由缓存预热负责）
+        Cursor cursor = readCursor();
+        if (cursor == null) {
+            LocalDateTime max = shopMapper.selectMaxUpdateTime();
+            if (max != null) {
+                saveCursor(new Cursor(max, 0));
+            }
+            return;
+        }
+        //以数据库时间为准，避免与应用服务器的时钟误差
+        LocalDateTime now = shopMapper.selectNow();
+        List<Long> typeIds = shopTypeService.list().stream().map(ShopType::getId).toList();
+        int maxRows = config.getMaxRowsPerRun();
+
+        //3.回扫：修改时间在最近overlap内、但排在游标之前的行，覆盖修改时间早于游标但提交较晚的事务
+        //  只回扫按数据库时间计算的最近一段，同一行最多被重复处理 overlap / interval 次
+        int rows = rescan(cursor, now.minus(config.getOverlap()), typeIds, config.getBatchSize(), maxRows);
+
+        //4.从游标开始按(update_time, id)分批查询，每批处理完就保存游标
+        boolean caughtUp = false;
+        while (rows < maxRows) {
+            List<Shop> shops = shopMapper.scanChanged(cursor.time(), cursor.id(), config.getBatchSize());
+            if (!shops.isEmpty()) {
+                apply(shops, typeIds);
+                rows += shops.size();
+                Shop last = shops.get(shops.size() - 1);
+                cursor = new Cursor(last.getUpdateTime(), last.getId());
+                saveCursor(cursor);
+            }
+            if (shops.size() < config.getBatchSize()) {
+                caughtUp = true;
+                break;
+            }
+        }
+        lagSeconds.set(caughtUp ? 0 : Math.max(0, Duration.between(cursor.time(), now).getSeconds()));
+        syncedCounter.increment(rows);
+        if (rows > 0) {
+            log.debug("店铺变更同步完成, 处理{}行, 游标:{}", rows, cursor);
+        }
+    }
+
+    /**
+     * 回扫[from, 游标)之间的行
+     *
+     * @param cursor
+     * @param from     回扫的开始时间
+     * @param typeIds
+     * @param batchSize
+     * @param maxRows
+     * @return 处理的行数
+     */
+    private int rescan(Cursor cursor, LocalDateTime from, List<Long> typeIds, int batchSize, int maxRows) {
+        if (!from.isBefore(cursor.time())) {
+            //游标落后于回扫窗口（正在追赶），不需要回扫
+            return 0;
+        }
+        LocalDateTime time = from;
+        long lastId = 0;
+        int rows = 0;
+        while (rows < maxRows) {
+            List<Shop> shops = shopMapper.scanChanged(time, lastId, batchSize);
+            //只处理游标之前的行，游标之后的行由正常同步处理
+            List<Shop> before = shops.stream().filter(shop -> isBefore(shop, cursor)).toList();
+            if (!before.isEmpty()) {
+                apply(before, typeIds);
+                rows += before.size();
+                Shop last = before.get(before.size() - 1);
+                time = last.getUpdateTime();
+                lastId = last.getId();
+            }
+            if (before.size() < shops.size() || shops.size() < batchSize) {
+                break;
+            }
+        }
+        return rows;
+    }
+
+    private static boolean isBefore(Shop shop, Cursor cursor) {
+        int compare = shop.getUpdateTime().compareTo(cursor.time());
+        return compare < 0 || (compare == 0 && shop.getId() <= cursor.id());
+    }
+
+    /**
+     * 同步一批修改过的店铺
+     *
+     * @param shops
+     * @param typeIds 所有店铺类型id
+     */
+    private void apply(List<Shop> shops, List<Long> typeIds) {
+        //1.删除店铺缓存和响应缓存（同时通知各节点清理本地缓存），写入布隆过滤器（新增的店铺）
+        for (Shop shop : shops) {
+            cacheInvalidator.invalidate(RedisConstants.CACHE_SHOP_KEY + shop.getId());
+            cacheInvalidator.invalidate(RedisConstants.CACHE_SHOP_RESP_KEY + shop.getId());
+            bloomFilterRegistry.put(RedisConstants.CACHE_SHOP_KEY, shop.getId());
+        }
+        //2.更新GEO数据：店铺类型可能被修改，先从其他类型中移除再写入当前类型
+        RedisSerializer<String> serializer = RedisSerializer.string();
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Shop shop : shops) {
+                byte[] member = serializer.serialize(shop.getId().toString());
+                for (Long typeId : typeIds) {
+                    if (!typeId.equals(shop.getTypeId())) {
+                        connection.zSetCommands().zRem(serializer.serialize(RedisConstants.SHOP_GEO_KEY + typeId), member);
+                    }
+                }
+                if (shop.getX() != null && shop.getY() != null) {
+                    connection.geoCommands().geoAdd(
+                            serializer.serialize(RedisConstants.SHOP_GEO_KEY + shop.getTypeId()),
+                            new Point(shop.getX(), shop.getY()), member);
+                }
+            }
+            return null;
+        });
+    }
+
+    private Cursor readCursor() {
+        List<Object> values = stringRedisTemplate.opsForHash()
+                .multiGet(RedisConstants.SHOP_SYNC_CURSOR_KEY, List.<Object>of("time", "id"));
+        if (values.get(0) == null) {
+            return null;
+        }
+        long id = values.get(1) == null ? 0 : Long.parseLong(values.get(1).toString());
+        return new Cursor(LocalDateTime.parse(values.get(0).toString()), id);
+    }
+
+    private void saveCursor(Cursor cursor) {
+        Map<String, String> value = new HashMap<>();
+        value.put("time", cursor.time().toString());
+        value.put("id", String.valueOf(cursor.id()));
+        stringRedisTemplate.opsForHash().putAll(RedisConstants.SHOP_SYNC_CURSOR_KEY, value);
+    }
+}
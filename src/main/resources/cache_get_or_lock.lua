@@ -0,0 +1,14 @@
+---
+--- 缓存未命中时的"查询或加锁"：一次往返内完成查询缓存和获取重建锁
+--- KEYS[1]：缓存key  KEYS[2]：锁key
+--- ARGV[1]：锁标识  ARGV[2]：锁的过期时间（秒）
+--- 返回 {1, 缓存值}：缓存存在（包括空值）；{2}：获取锁成功，由调用方重建；{0}：其他请求正在重建
+---
+local value = redis.call('get', KEYS[1])
+if (value) then
+    return {1, value}
+end
+if (redis.call('set', KEYS[2], ARGV[1], 'NX', 'EX', ARGV[2])) then
+    return {2}
+end
+return {0}
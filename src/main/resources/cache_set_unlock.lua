@@ -0,0 +1,14 @@
+---
+--- 重建完成后的"写入并释放锁"：一次往返内完成写入缓存、释放锁、广播重建完成
+--- KEYS[1]：缓存key  KEYS[2]：锁key
+--- ARGV[1]：锁标识  ARGV[2]：缓存值  ARGV[3]：缓存过期时间（秒）  ARGV[4]：重建完成广播频道
+--- 返回 1：锁由自己释放；0：锁已过期或者被其他请求持有（缓存仍然写入）
+---
+redis.call('set', KEYS[1], ARGV[2], 'EX', ARGV[3])
+redis.call('publish', ARGV[4], KEYS[1])
+-- 比较锁标识，是自己的锁才释放
+if (redis.call('get', KEYS[2]) == ARGV[1]) then
+    redis.call('del', KEYS[2])
+    return 1
+end
+return 0
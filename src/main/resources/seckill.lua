@@ -0,0 +1,37 @@
+---
+--- 秒杀资格判断与库存预扣减：一次往返内完成时间窗口、库存、一人一单的判断和扣减
+--- KEYS[1]：库存key  KEYS[2]：已下单用户集合key  KEYS[3]：秒杀时间窗口key（hash：begin、end，毫秒时间戳）
+--- KEYS[4]（可选）：订单消息队列（stream），传入时预扣减成功后在同一个脚本中写入订单消息，不会出现扣减了库存却丢失订单的情况
+--- KEYS[1]~KEYS[3]使用相同的hash tag（{优惠券id}）；KEYS[4]是全局的key，传入时要求单节点redis（集群会报CROSSSLOT）
+--- ARGV[1]：用户id  ARGV[2]：当前时间（毫秒时间戳）  ARGV[3]：订单id  ARGV[4]：优惠券id
+--- 返回 0：成功；5：成功且库存已扣完；1：库存不足；2：重复下单；3：尚未开始；4：已经结束；-1：库存未初始化
+---
+local stock = redis.call('get', KEYS[1])
+if (not stock) then
+    return -1
+end
+local now = tonumber(ARGV[2])
+local window = redis.call('hmget', KEYS[3], 'begin', 'end')
+if (window[1] and now < tonumber(window[1])) then
+    return 3
+end
+if (window[2] and now > tonumber(window[2])) then
+    return 4
+end
+if (tonumber(stock) <= 0) then
+    return 1
+end
+if (redis.call('sismember', KEYS[2], ARGV[1]) == 1) then
+    return 2
+end
+-- 扣减库存，记录下单用户
+local left = redis.call('incrby', KEYS[1], -1)
+redis.call('sadd', KEYS[2], ARGV[1])
+-- 发送订单消息 xadd stream:orders * userId voucherId id
+if (KEYS[4]) then
+    redis.call('xadd', KEYS[4], '*', 'userId', ARGV[1], 'voucherId', ARGV[4], 'id', ARGV[3])
+end
+if (left == 0) then
+    return 5
+end
+return 0
@@ -0,0 +1,10 @@
+---
+--- 回滚秒杀预扣减（订单写入失败时调用）：用户确实在已下单集合中才归还库存，重复调用不会多加库存
+--- KEYS[1]：库存key  KEYS[2]：已下单用户集合key
+--- ARGV[1]：用户id
+---
+if (redis.call('srem', KEYS[2], ARGV[1]) == 1) then
+    redis.call('incrby', KEYS[1], 1)
+    return 1
+end
+return 0
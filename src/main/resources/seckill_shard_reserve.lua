@@ -0,0 +1,18 @@
+---
+--- 在用户所属的分片上预占一人一单资格并扣减库存
+--- 分片库存key和分片已下单用户集合key使用相同的hash tag（{优惠券id:分片序号}），在同一个slot上
+--- KEYS[1]：分片库存key  KEYS[2]：分片已下单用户集合key
+--- ARGV[1]：用户id
+--- 返回 -1：分片未初始化；-2：重复下单；-3：已预占，但分片库存为0（由调用方从其他分片扣减）；大于等于0：成功，扣减后分片的剩余库存
+---
+local stock = redis.call('get', KEYS[1])
+if (not stock) then
+    return -1
+end
+if (redis.call('sadd', KEYS[2], ARGV[1]) == 0) then
+    return -2
+end
+if (tonumber(stock) <= 0) then
+    return -3
+end
+return redis.call('incrby', KEYS[1], -1)
@@ -0,0 +1,15 @@
+---
+--- 从一个库存分片中扣减库存（每个分片是独立的key，可以分布在不同的slot上，脚本只访问一个key）
+--- KEYS[1]：分片库存key
+--- ARGV[1]：扣减数量  ARGV[2]：扣减后分片至少保留的库存（均衡分片时源分片不能被移空）
+--- 返回 -1：分片未初始化；-2：分片库存不足；大于等于0：成功，扣减后分片的剩余库存
+---
+local stock = redis.call('get', KEYS[1])
+if (not stock) then
+    return -1
+end
+local count = tonumber(ARGV[1])
+if (tonumber(stock) - count < tonumber(ARGV[2])) then
+    return -2
+end
+return redis.call('incrby', KEYS[1], -count)
@@ -0,0 +1,12 @@
+---
+--- 取出单个库存key中的库存并置为0（库存迁移到分片时使用，只有一个节点能取到库存）
+--- 不删除key：仍按单个key扣减的节点会判断为库存不足，而不是从数据库重新加载库存
+--- KEYS[1]：库存key
+--- 返回 -1：库存key不存在；否则返回原库存
+---
+local stock = redis.call('get', KEYS[1])
+if (not stock) then
+    return -1
+end
+redis.call('set', KEYS[1], 0)
+return tonumber(stock)
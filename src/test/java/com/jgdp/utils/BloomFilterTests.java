@@ -0,0 +1,70 @@
+package com.jgdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 布隆过滤器的位映射，以及与Redis bitmap字节格式的互相转换
+ */
+class BloomFilterTests {
+
+    @Test
+    void noFalseNegatives() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        for (int i = 0; i < 1000; i++) {
+            filter.put(String.valueOf(i));
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(filter.mightContain(String.valueOf(i)));
+        }
+        assertEquals(1000, filter.getInsertions());
+    }
+
+    @Test
+    void redisBitOrder() {
+        //Redis中偏移量为index的位在第index/8个字节，从最高位开始计数
+        BloomFilter filter = new BloomFilter(100, 0.01);
+        filter.put("1");
+
+        byte[] bytes = filter.toRedisBytes();
+
+        Set<Integer> indexes = new HashSet<>();
+        for (int index : filter.indexes("1")) {
+            indexes.add(index);
+            assertTrue((bytes[index / 8] & (0x80 >>> (index % 8))) != 0);
+        }
+        //除了元素对应的位，其他位都没有置位
+        int set = 0;
+        for (byte b : bytes) {
+            set += Integer.bitCount(b & 0xff);
+        }
+        assertEquals(indexes.size(), set);
+    }
+
+    @Test
+    void loadRedisBytes() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+        for (int i = 0; i < 500; i++) {
+            filter.put(String.valueOf(i));
+        }
+
+        BloomFilter loaded = new BloomFilter(1000, 0.01);
+        loaded.loadRedisBytes(filter.toRedisBytes());
+
+        for (int i = 0; i < 500; i++) {
+            assertTrue(loaded.mightContain(String.valueOf(i)));
+        }
+        assertFalse(new BloomFilter(1000, 0.01).mightContain("1"));
+        //写入个数按置位比例估算，误差很小
+        assertEquals(500, loaded.getInsertions(), 25);
+    }
+}
@@ -0,0 +1,84 @@
+package com.jgdp.utils;
+
+import com.jgdp.entity.Shop;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * JSON、二进制、二进制+压缩编解码的对比：每个Shop的字节数、编码耗时、解码耗时
+ * 耗时较长，默认不执行，通过 -Dcache.benchmark=true 开启
+ */
+@EnabledIfSystemProperty(named = "cache.benchmark", matches = "true")
+class CacheCodecBenchmarkTests {
+
+    private static final int WARMUP_ROUNDS = 20_000;
+    private static final int ROUNDS = 100_000;
+
+    @Test
+    void compareCodecs() {
+        Shop shop = sampleShop();
+        JsonCacheCodec json = new JsonCacheCodec();
+        BinaryCacheCodec binary = new BinaryCacheCodec(json);
+
+        System.out.printf("%-8s %10s %14s %14s%n", "codec", "bytes", "encode(ns/op)", "decode(ns/op)");
+        run("json", json, shop);
+        run("binary", binary, shop);
+        //阈值调低，让示例数据也会被压缩
+        run("deflate", new CompressingCacheCodec(binary, 256, new SimpleMeterRegistry()), shop);
+    }
+
+    private void run(String name, CacheCodec codec, Shop shop) {
+        //1.校验编解码结果一致
+        byte[] bytes = codec.encode(shop);
+        assertEquals(shop.getImages(), codec.decode(bytes, Shop.class).getImages());
+        RedisData redisData = codec.decodeWithExpire(codec.encodeWithExpire(shop, LocalDateTime.now()), Shop.class);
+        assertEquals(shop.getId(), ((Shop) redisData.getData()).getId());
+
+        //2.预热
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            codec.decode(codec.encode(shop), Shop.class);
+        }
+
+        //3.分别统计编码和解码的平均耗时
+        long begin = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            bytes = codec.encode(shop);
+        }
+        long encodeNanos = (System.nanoTime() - begin) / ROUNDS;
+
+        begin = System.nanoTime();
+        for (int i = 0; i < ROUNDS; i++) {
+            codec.decode(bytes, Shop.class);
+        }
+        long decodeNanos = (System.nanoTime() - begin) / ROUNDS;
+
+        System.out.printf("%-8s %10d %14d %14d%n", name, bytes.length, encodeNanos, decodeNanos);
+    }
+
+    private static Shop sampleShop() {
+        return new Shop()
+                .setId(1L)
+                .setName("103茶餐厅")
+                .setTypeId(1L)
+                .setImages("https://qcloud.dpfile.com/pc/jiclIsCKmOI2arxKN1Uf0Hx3PucIJH8q0QSz-Z8llzcN56-_QiKuOvyio1OOxsRtFoXqu0G3iT2T27qat3WhLVEuLYk00OmSS1IdNpm8K8sG4JN9RIm2mTKcbLtc2o2vfCF2ubeXzk49OsGrXt_KYDCngOyCwZK-s3fqawWswzk.jpg,"
+                        + "https://qcloud.dpfile.com/pc/IOf6VX3qaBgFXFVgp75w-KKJmWZjFc8GXDU8g9bQC6YGCpAmG00QbfT4vCCBj7njuzFvxlbkWx5uwqY2qcjixFEuLYk00OmSS1IdNpm8K8sG4JN9RIm2mTKcbLtc2o2vmIU_8ZGOT1OjpJmLxG6urQ.jpg")
+                .setArea("大关")
+                .setAddress("金华路锦昌文华苑29号")
+                .setX(120.149192)
+                .setY(30.316078)
+                .setAvgPrice(80L)
+                .setSold(4215)
+                .setComments(3035)
+                .setScore(37)
+                .setOpenHours("10:00-22:00")
+                .setCreateTime(LocalDateTime.of(2021, 12, 22, 18, 10, 39))
+                .setUpdateTime(LocalDateTime.of(2022, 1, 13, 17, 32, 19));
+    }
+}
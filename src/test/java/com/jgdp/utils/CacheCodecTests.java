@@ -0,0 +1,122 @@
+package com.jgdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import com.jgdp.entity.Shop;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 缓存编解码的往返测试
+ */
+class CacheCodecTests {
+
+    private final JsonCacheCodec json = new JsonCacheCodec();
+    private final BinaryCacheCodec binary = new BinaryCacheCodec(json);
+    //阈值设为200字节，方便分别测试压缩和不压缩
+    private final CompressingCacheCodec compressing =
+            new CompressingCacheCodec(binary, 200, new SimpleMeterRegistry());
+
+    @Test
+    void jsonArrayWithExpire() {
+        //@Cached方法返回的List按数组缓存，逻辑过期、SWR策略按带过期时间的格式写入
+        Shop[] shops = {shop(1L, "103茶餐厅"), shop(2L, "蔡馬洪涛烤肉")};
+        LocalDateTime expireTime = LocalDateTime.now().plusMinutes(30).truncatedTo(ChronoUnit.SECONDS);
+
+        RedisData redisData = json.decodeWithExpire(json.encodeWithExpire(shops, expireTime), Shop[].class);
+
+        assertEquals(expireTime, redisData.getExpireTime());
+        assertArrayEquals(shops, (Shop[]) redisData.getData());
+    }
+
+    @Test
+    void jsonArray() {
+        Shop[] shops = {shop(1L, "103茶餐厅"), shop(2L, "蔡馬洪涛烤肉")};
+
+        assertArrayEquals(shops, json.decode(json.encode(shops), Shop[].class));
+    }
+
+    @Test
+    void binaryRoundTrip() {
+        Shop shop = shop(1L, "103茶餐厅");
+
+        byte[] bytes = binary.encode(shop);
+
+        assertEquals(BinaryCacheCodec.MAGIC, bytes[0]);
+        assertEquals(shop, binary.decode(bytes, Shop.class));
+    }
+
+    @Test
+    void binaryWithExpire() {
+        Shop shop = shop(1L, "103茶餐厅");
+        LocalDateTime expireTime = LocalDateTime.now().plusMinutes(30).truncatedTo(ChronoUnit.MILLIS);
+
+        RedisData redisData = binary.decodeWithExpire(binary.encodeWithExpire(shop, expireTime), Shop.class);
+
+        assertEquals(expireTime, redisData.getExpireTime());
+        assertEquals(shop, redisData.getData());
+    }
+
+    @Test
+    void binaryWithoutExpireHasNoExpireTime() {
+        //按普通值写入的数据头部过期时间为0，读取时不能当成1970年已经过期
+        Shop shop = shop(1L, "103茶餐厅");
+
+        RedisData redisData = binary.decodeWithExpire(binary.encode(shop), Shop.class);
+
+        assertNull(redisData.getExpireTime());
+        assertEquals(shop, redisData.getData());
+    }
+
+    @Test
+    void binaryReadsLegacyJson() {
+        Shop shop = shop(1L, "103茶餐厅");
+
+        assertEquals(shop, binary.decode(json.encode(shop), Shop.class));
+    }
+
+    @Test
+    void compressAboveThreshold() {
+        Shop shop = shop(1L, "103茶餐厅").setAddress(StrUtil.repeat("金华路锦昌文华苑29号", 20));
+
+        byte[] bytes = compressing.encode(shop);
+
+        assertEquals(CompressingCacheCodec.MAGIC, bytes[0]);
+        assertTrue(bytes.length < binary.encode(shop).length);
+        assertEquals(shop, compressing.decode(bytes, Shop.class));
+    }
+
+    @Test
+    void compressWithExpire() {
+        Shop shop = shop(1L, "103茶餐厅").setAddress(StrUtil.repeat("金华路锦昌文华苑29号", 20));
+        LocalDateTime expireTime = LocalDateTime.now().plusMinutes(30).truncatedTo(ChronoUnit.MILLIS);
+
+        RedisData redisData = compressing.decodeWithExpire(compressing.encodeWithExpire(shop, expireTime), Shop.class);
+
+        assertEquals(expireTime, redisData.getExpireTime());
+        assertEquals(shop, redisData.getData());
+    }
+
+    @Test
+    void keepSmallValuesUncompressed() {
+        Shop shop = shop(1L, "103茶餐厅");
+
+        byte[] bytes = compressing.encode(shop);
+
+        assertArrayEquals(binary.encode(shop), bytes);
+        assertEquals(shop, compressing.decode(bytes, Shop.class));
+    }
+
+    private static Shop shop(Long id, String name) {
+        return new Shop().setId(id).setName(name).setTypeId(1L).setX(120.149192).setY(30.316078);
+    }
+}
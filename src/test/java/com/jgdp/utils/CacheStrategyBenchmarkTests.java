@@ -0,0 +1,245 @@
+package com.jgdp.utils;
+
+import com.jgdp.entity.Shop;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 缓存策略的场景压测：缓存击穿（冷启动时大量并发访问同一个热点key）、缓存穿透（随机访问不存在的id）、
+ * 缓存雪崩（大量key同时过期），分别统计三种策略的数据库查询次数、redis命令数、吞吐量和p50/p99/p999延迟
+ * 需要本地redis，数据库用内存中的模拟数据代替（固定延迟）
+ * 运行方式：mvn test -Dtest=CacheStrategyBenchmarkTests -Dcache.benchmark=true
+ */
+@EnabledIfSystemProperty(named = "cache.benchmark", matches = "true")
+@SpringBootTest(properties = {
+        "jgdp.cache.warm-up.enabled=false",
+        "jgdp.cache.bloom.enabled=false",
+        "jgdp.cache.hot-key.enabled=false",
+        "jgdp.cache.client-side.enabled=false",
+        //关闭店铺变更同步和秒杀的stream消费者，redis命令数只统计被测策略
+        "jgdp.cache.change-sync.enabled=false",
+        "jgdp.seckill.mode=redis"
+})
+class CacheStrategyBenchmarkTests {
+
+    private static final String KEY_PREFIX = "cache:bench:";
+    //并发线程数
+    private static final int THREADS = 64;
+    //每个场景的请求数
+    private static final int REQUESTS = 20_000;
+    //模拟数据库中的数据量
+    private static final int ROWS = 1000;
+    //模拟数据库的查询耗时
+    private static final long DB_LATENCY_MILLIS = 20;
+    //雪崩场景中key的过期时间
+    private static final long AVALANCHE_TTL_SECONDS = 2;
+
+    @Autowired
+    private CacheHandleUtils cacheHandleUtils;
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+    private final FakeDb db = new FakeDb();
+
+    private enum Strategy {
+        PASS_THROUGH, MUTEX, LOGICAL_EXPIRE
+    }
+
+    @AfterEach
+    void cleanUp() {
+        Set<String> keys = stringRedisTemplate.keys(KEY_PREFIX + "*");
+        if (keys != null && !keys.isEmpty()) {
+            stringRedisTemplate.delete(keys);
+        }
+    }
+
+    /**
+     * 缓存击穿：热点key不存在（或逻辑过期）时，所有请求同时访问它
+     */
+    @Test
+    void stampede() throws InterruptedException {
+        printHeader("stampede");
+        for (Strategy strategy : Strategy.values()) {
+            String prefix = KEY_PREFIX + "stampede:" + strategy + ":";
+            if (strategy == Strategy.LOGICAL_EXPIRE) {
+                //逻辑过期依赖预热，写入一个马上过期的值模拟热点key刚好过期
+                cacheHandleUtils.setWithLogicalExpire(prefix + 1, db.rows.get(1L), 1L, TimeUnit.SECONDS);
+                Thread.sleep(1500);
+            }
+            run("stampede", strategy, prefix, i -> 1L);
+        }
+    }
+
+    /**
+     * 缓存穿透：随机访问数据库中不存在的id
+     */
+    @Test
+    void penetration() {
+        printHeader("penetration");
+        for (Strategy strategy : Strategy.values()) {
+            String prefix = KEY_PREFIX + "penetration:" + strategy + ":";
+            run("penetration", strategy, prefix, i -> ROWS + 1 + ThreadLocalRandom.current().nextInt(ROWS));
+        }
+    }
+
+    /**
+     * 缓存雪崩：预先写入的大量key在同一时刻过期后，请求均匀访问这些key
+     */
+    @Test
+    void avalanche() throws InterruptedException {
+        printHeader("avalanche");
+        for (Strategy strategy : Strategy.values()) {
+            String prefix = KEY_PREFIX + "avalanche:" + strategy + ":";
+            for (long id = 1; id <= ROWS; id++) {
+                if (strategy == Strategy.LOGICAL_EXPIRE) {
+                    cacheHandleUtils.setWithLogicalExpire(prefix + id, db.rows.get(id), AVALANCHE_TTL_SECONDS, TimeUnit.SECONDS);
+                } else {
+                    cacheHandleUtils.set(prefix + id, db.rows.get(id), AVALANCHE_TTL_SECONDS, TimeUnit.SECONDS);
+                }
+            }
+            //等待所有key过期（过期时间带随机抖动）
+            Thread.sleep(TimeUnit.SECONDS.toMillis(AVALANCHE_TTL_SECONDS * 2));
+            run("avalanche", strategy, prefix, i -> 1 + ThreadLocalRandom.current().nextInt(ROWS));
+        }
+    }
+
+    private void run(String scenario, Strategy strategy, String prefix, LongUnaryOperator idOfRequest) {
+        db.queries.set(0);
+        long redisOpsBefore = redisCommandCalls();
+        long[] latencies = new long[REQUESTS];
+        AtomicInteger next = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(THREADS);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                    int i;
+                    while ((i = next.getAndIncrement()) < REQUESTS) {
+                        long id = idOfRequest.applyAsLong(i);
+                        long begin = System.nanoTime();
+                        query(strategy, prefix, id, db::find);
+                        latencies[i] = System.nanoTime() - begin;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long elapsed = System.nanoTime() - begin;
+        executor.shutdown();
+
+        Arrays.sort(latencies);
+        System.out.printf("%-12s %-15s %10d %12d %12d %10.3f %10.3f %10.3f%n",
+                scenario, strategy, db.queries.get(), redisCommandCalls() - redisOpsBefore,
+                REQUESTS * TimeUnit.SECONDS.toNanos(1) / elapsed,
+                percentile(latencies, 0.5), percentile(latencies, 0.99), percentile(latencies, 0.999));
+    }
+
+    private Shop query(Strategy strategy, String prefix, long id, Function<Long, Shop> dbFallback) {
+        return switch (strategy) {
+            case PASS_THROUGH -> cacheHandleUtils.queryWithPassThrough(
+                    prefix, id, Shop.class, dbFallback, 30L, TimeUnit.MINUTES);
+            case MUTEX -> cacheHandleUtils.queryWithMutex(
+                    prefix, id, Shop.class, dbFallback, 30L, TimeUnit.MINUTES);
+            case LOGICAL_EXPIRE -> cacheHandleUtils.queryWithLogicalExpire(
+                    prefix, id, Shop.class, dbFallback, 30L, TimeUnit.MINUTES);
+        };
+    }
+
+    /**
+     * redis服务端累计执行的命令数（INFO commandstats中所有命令calls之和）
+     */
+    private long redisCommandCalls() {
+        Properties info = stringRedisTemplate.execute(
+                (RedisCallback<Properties>) connection -> connection.serverCommands().info("commandstats"));
+        long calls = 0;
+        if (info != null) {
+            for (Object value : info.values()) {
+                //格式：calls=10,usec=100,usec_per_call=10.00,...
+                String stats = value.toString();
+                if (stats.startsWith("calls=")) {
+                    calls += Long.parseLong(stats.substring("calls=".length(), stats.indexOf(',')));
+                }
+            }
+        }
+        return calls;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(sorted.length * p) - 1);
+        return sorted[index] / 1_000_000.0;
+    }
+
+    private static void printHeader(String scenario) {
+        System.out.printf("%n%-12s %-15s %10s %12s %12s %10s %10s %10s%n",
+                "scenario", "strategy", "db-queries", "redis-ops", "throughput", "p50(ms)", "p99(ms)", "p999(ms)");
+    }
+
+    /**
+     * 模拟数据库：内存中的店铺数据，每次查询固定耗时并计数
+     */
+    private static class FakeDb {
+        private final Map<Long, Shop> rows = new ConcurrentHashMap<>();
+        private final AtomicLong queries = new AtomicLong();
+
+        FakeDb() {
+            for (long id = 1; id <= ROWS; id++) {
+                rows.put(id, new Shop()
+                        .setId(id)
+                        .setName("店铺" + id)
+                        .setTypeId(1L)
+                        .setArea("大关")
+                        .setAddress("金华路锦昌文华苑" + id + "号")
+                        .setX(120.149192)
+                        .setY(30.316078)
+                        .setAvgPrice(80L)
+                        .setOpenHours("10:00-22:00")
+                        .setUpdateTime(LocalDateTime.now()));
+            }
+        }
+
+        Shop find(Long id) {
+            queries.incrementAndGet();
+            try {
+                Thread.sleep(DB_LATENCY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return rows.get(id);
+        }
+    }
+}
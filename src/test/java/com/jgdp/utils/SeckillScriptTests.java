@@ -0,0 +1,167 @@
+package com.jgdp.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author 喜欢悠然独自在
+ * @version 1.0
+ * 秒杀lua脚本的返回值和对库存、已下单用户集合的修改
+ * 需要本地redis，每个测试使用随机的优惠券id，结束后删除用到的key
+ */
+@SpringBootTest(properties = {
+        "jgdp.cache.change-sync.enabled=false",
+        "jgdp.seckill.mode=redis"
+})
+class SeckillScriptTests {
+
+    private static final DefaultRedisScript<Long> SECKILL = script("seckill.lua");
+    private static final DefaultRedisScript<Long> ROLLBACK = script("seckill_rollback.lua");
+    private static final DefaultRedisScript<Long> RESERVE = script("seckill_shard_reserve.lua");
+    private static final DefaultRedisScript<Long> TAKE = script("seckill_shard_take.lua");
+    private static final DefaultRedisScript<Long> DRAIN = script("seckill_stock_drain.lua");
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    private final long voucherId = ThreadLocalRandom.current().nextLong(1_000_000_000L, 2_000_000_000L);
+    private final String stockKey = RedisConstants.SECKILL_STOCK_KEY + "{" + voucherId + "}";
+    private final String orderKey = RedisConstants.SECKILL_ORDER_KEY + "{" + voucherId + "}";
+    private final String windowKey = RedisConstants.SECKILL_WINDOW_KEY + "{" + voucherId + "}";
+    private final String streamKey = "stream:orders:test:{" + voucherId + "}";
+    private final String shardKey = RedisConstants.SECKILL_STOCK_KEY + "{" + voucherId + ":0}";
+    private final String buyerKey = RedisConstants.SECKILL_ORDER_KEY + "{" + voucherId + ":0}";
+
+    @AfterEach
+    void cleanUp() {
+        stringRedisTemplate.delete(List.of(stockKey, orderKey, windowKey, streamKey, shardKey, buyerKey));
+    }
+
+    @Test
+    void seckillReturnCodes() {
+        long now = System.currentTimeMillis();
+        //1.库存未初始化
+        assertEquals(SeckillStockManager.NOT_LOADED, seckill(1L, now));
+
+        //2.时间窗口
+        stringRedisTemplate.opsForValue().set(stockKey, "2");
+        stringRedisTemplate.opsForHash().putAll(windowKey, Map.of("begin", String.valueOf(now), "end", String.valueOf(now + 1000)));
+        assertEquals(SeckillStockManager.NOT_STARTED, seckill(1L, now - 1));
+        assertEquals(SeckillStockManager.ENDED, seckill(1L, now + 1001));
+
+        //3.扣减、重复下单、抢到最后一件、库存不足
+        assertEquals(SeckillStockManager.SUCCESS, seckill(1L, now));
+        assertEquals(SeckillStockManager.REPEAT, seckill(1L, now));
+        assertEquals(SeckillStockManager.SUCCESS_SOLD_OUT, seckill(2L, now));
+        assertEquals(SeckillStockManager.NO_STOCK, seckill(3L, now));
+        assertEquals("0", stringRedisTemplate.opsForValue().get(stockKey));
+        assertEquals(2L, stringRedisTemplate.opsForSet().size(orderKey));
+    }
+
+    @Test
+    void seckillWritesOrderMessage() {
+        stringRedisTemplate.opsForValue().set(stockKey, "1");
+        Long result = stringRedisTemplate.execute(SECKILL, Arrays.asList(stockKey, orderKey, windowKey, streamKey),
+                "1", String.valueOf(System.currentTimeMillis()), "100", String.valueOf(voucherId));
+
+        assertEquals(SeckillStockManager.SUCCESS_SOLD_OUT, result.intValue());
+        assertEquals(1L, stringRedisTemplate.opsForStream().size(streamKey));
+    }
+
+    @Test
+    void rollbackIsIdempotent() {
+        stringRedisTemplate.opsForValue().set(stockKey, "0");
+        stringRedisTemplate.opsForSet().add(orderKey, "1");
+
+        assertEquals(1L, rollback(1L));
+        assertEquals(0L, rollback(1L));
+        assertEquals(0L, rollback(2L));
+        assertEquals("1", stringRedisTemplate.opsForValue().get(stockKey));
+        assertFalse(stringRedisTemplate.opsForSet().isMember(orderKey, "1"));
+    }
+
+    @Test
+    void shardReserve() {
+        //1.分片未初始化
+        assertEquals(-1L, reserve(1L));
+
+        //2.扣减成功返回剩余库存，重复下单
+        stringRedisTemplate.opsForValue().set(shardKey, "1");
+        assertEquals(0L, reserve(1L));
+        assertEquals(-2L, reserve(1L));
+
+        //3.分片库存为0：保留预占，由调用方从其他分片扣减
+        assertEquals(-3L, reserve(2L));
+        assertTrue(stringRedisTemplate.opsForSet().isMember(buyerKey, "2"));
+        assertEquals("0", stringRedisTemplate.opsForValue().get(shardKey));
+    }
+
+    @Test
+    void shardTakeKeepsMinimum() {
+        assertEquals(-1L, take(1, 0));
+
+        stringRedisTemplate.opsForValue().set(shardKey, "3");
+        //扣减后不足保留数量时失败，不修改库存
+        assertEquals(-2L, take(2, 2));
+        assertEquals("3", stringRedisTemplate.opsForValue().get(shardKey));
+        assertEquals(2L, take(1, 2));
+        assertEquals(0L, take(2, 0));
+        assertEquals(-2L, take(1, 0));
+    }
+
+    @Test
+    void drainOnlyOnce() {
+        assertEquals(-1L, drain());
+
+        stringRedisTemplate.opsForValue().set(stockKey, "7");
+        assertEquals(7L, drain());
+        //key保留并置为0，按单个key扣减的节点判断为库存不足
+        assertEquals(0L, drain());
+        assertEquals("0", stringRedisTemplate.opsForValue().get(stockKey));
+    }
+
+    private int seckill(Long userId, long now) {
+        Long result = stringRedisTemplate.execute(SECKILL, Arrays.asList(stockKey, orderKey, windowKey),
+                userId.toString(), String.valueOf(now), "0", String.valueOf(voucherId));
+        return result.intValue();
+    }
+
+    private Long rollback(Long userId) {
+        return stringRedisTemplate.execute(ROLLBACK, Arrays.asList(stockKey, orderKey), userId.toString());
+    }
+
+    private Long reserve(Long userId) {
+        return stringRedisTemplate.execute(RESERVE, Arrays.asList(shardKey, buyerKey), userId.toString());
+    }
+
+    private Long take(long count, long keep) {
+        return stringRedisTemplate.execute(TAKE, Collections.singletonList(shardKey),
+                String.valueOf(count), String.valueOf(keep));
+    }
+
+    private Long drain() {
+        return stringRedisTemplate.execute(DRAIN, Collections.singletonList(stockKey));
+    }
+
+    private static DefaultRedisScript<Long> script(String name) {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setLocation(new ClassPathResource(name));
+        script.setResultType(Long.class);
+        return script;
+    }
+}